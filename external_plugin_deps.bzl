@@ -54,3 +54,29 @@ def external_plugin_deps():
         artifact = "org.glassfish:javax.json:1.0.4",
         sha1 = "3178f73569fd7a1e5ffc464e680f7a8cc784b85a",
     )
+
+    JMH_VERSION = "1.37"
+
+    maven_jar(
+        name = "jmh-core",
+        artifact = "org.openjdk.jmh:jmh-core:" + JMH_VERSION,
+        sha1 = "896f27e49105b35ea1964319c83d12082e7a79ef",
+    )
+
+    maven_jar(
+        name = "jmh-generator-annprocess",
+        artifact = "org.openjdk.jmh:jmh-generator-annprocess:" + JMH_VERSION,
+        sha1 = "da93888682df163144edf9b13d2b78e54166063a",
+    )
+
+    maven_jar(
+        name = "jmh-jopt-simple",
+        artifact = "net.sf.jopt-simple:jopt-simple:5.0.4",
+        sha1 = "4fdac2fbe92dfad86aa6e9301736f6b4342a3f5c",
+    )
+
+    maven_jar(
+        name = "jmh-commons-math3",
+        artifact = "org.apache.commons:commons-math3:3.6.1",
+        sha1 = "e4ba98f1d4b3c80ec46392f25e094a6a2e58fcbf",
+    )
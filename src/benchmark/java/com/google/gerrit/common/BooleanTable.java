@@ -21,6 +21,9 @@ import java.util.Map;
 /**
  * A space efficient Table for Booleans. This Table takes advantage of the fact that the values
  * stored in it are all Booleans and uses BitSets to make this very space efficient.
+ *
+ * <p>No longer used by the plugin, which uses the IntColumnBooleanTable instead, only kept for the
+ * BooleanTableBenchmark to compare them.
  */
 public class BooleanTable<R, C> {
   protected class Row {
@@ -0,0 +1,196 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_APPLICABLE;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_FAIL;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_NAME;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_NAMES_FACTORY;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_PASS;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_PRELOAD_TASK;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_PROPERTIES_PREFIX;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_READY_HINT;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_SUBTASK;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_SUBTASKS_FACTORY;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.KEY_TYPE;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.SECTION_NAMES_FACTORY;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.SECTION_ROOT;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.SECTION_TASK;
+import static com.googlesource.gerrit.plugins.task.TaskConfig.SECTION_TASKS_FACTORY;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Generators of synthetic task.config files, each stressing one of the evaluation hot paths.
+ *
+ * <p>The queries of the generated tasks are only meaningful to the fake predicates of the
+ * BenchmarkFixture, and no task uses change properties since the fake changes have no notes.
+ */
+public class BenchmarkConfigs {
+  public enum Shape {
+    /** One root with many subtasks, each with a few leaf subtasks. */
+    WIDE_TREE,
+    /** A long chain of subtasks, each with a few leaf subtasks. */
+    DEEP_TREE,
+    /** A few tasks preloading from the end of a long chain of preload-tasks. */
+    DEEP_PRELOAD,
+    /** Tasks with many properties, each property expanding the previous one. */
+    HEAVY_PROPERTIES,
+    /** A root with many subtasks-factories, each creating tasks from a static names-factory. */
+    TASKS_FACTORIES
+  }
+
+  protected static final int LEAVES = 4;
+  protected static final int PRELOADING_TASKS = 10;
+  protected static final int NAMES = 10;
+
+  public static Config create(Shape shape, int size) {
+    switch (shape) {
+      case WIDE_TREE:
+        return wideTree(size);
+      case DEEP_TREE:
+        return deepTree(size);
+      case DEEP_PRELOAD:
+        return deepPreload(size);
+      case HEAVY_PROPERTIES:
+        return heavyProperties(size);
+      case TASKS_FACTORIES:
+        return tasksFactories(size);
+    }
+    throw new IllegalArgumentException("Unknown shape: " + shape);
+  }
+
+  public static Config wideTree(int width) {
+    Config cfg = new Config();
+    List<String> subTasks = new ArrayList<>();
+    for (int i = 0; i < width; i++) {
+      String name = "task" + i;
+      subTasks.add(name);
+      setTask(cfg, SECTION_TASK, name, "is:open", "status:merged", "label:Verified-1");
+      List<String> leaves = new ArrayList<>();
+      for (int l = 0; l < LEAVES; l++) {
+        String leaf = name + "-leaf" + l;
+        leaves.add(leaf);
+        setTask(cfg, SECTION_TASK, leaf, "is:open", "label:Check-" + l + "=+1", null);
+      }
+      cfg.setStringList(SECTION_TASK, name, KEY_SUBTASK, leaves);
+    }
+    setTask(cfg, SECTION_ROOT, "root", "is:open", null, null);
+    cfg.setStringList(SECTION_ROOT, "root", KEY_SUBTASK, subTasks);
+    return cfg;
+  }
+
+  public static Config deepTree(int depth) {
+    Config cfg = new Config();
+    for (int d = 0; d < depth; d++) {
+      String name = "level" + d;
+      setTask(cfg, SECTION_TASK, name, "is:open", "status:merged", null);
+      List<String> subTasks = new ArrayList<>();
+      for (int l = 0; l < LEAVES; l++) {
+        String leaf = name + "-leaf" + l;
+        subTasks.add(leaf);
+        setTask(cfg, SECTION_TASK, leaf, "is:open", "label:Check-" + l + "=+1", null);
+      }
+      if (d + 1 < depth) {
+        subTasks.add("level" + (d + 1));
+      }
+      cfg.setStringList(SECTION_TASK, name, KEY_SUBTASK, subTasks);
+    }
+    setTask(cfg, SECTION_ROOT, "root", "is:open", null, null);
+    cfg.setString(SECTION_ROOT, "root", KEY_SUBTASK, "level0");
+    return cfg;
+  }
+
+  public static Config deepPreload(int depth) {
+    Config cfg = new Config();
+    for (int d = 0; d < depth; d++) {
+      String name = "preload" + d;
+      cfg.setString(SECTION_TASK, name, KEY_PROPERTIES_PREFIX + "level" + d, name);
+      cfg.setString(SECTION_TASK, name, KEY_READY_HINT, "Ready at " + name);
+      cfg.setString(SECTION_TASK, name, KEY_SUBTASK, "leaf");
+      if (d > 0) {
+        cfg.setString(SECTION_TASK, name, KEY_PRELOAD_TASK, "preload" + (d - 1));
+      }
+    }
+    setTask(cfg, SECTION_TASK, "preload0", "is:open", "status:merged", null);
+    setTask(cfg, SECTION_TASK, "leaf", "is:open", "label:Verified+1", null);
+
+    List<String> subTasks = new ArrayList<>();
+    for (int i = 0; i < PRELOADING_TASKS; i++) {
+      String name = "task" + i;
+      subTasks.add(name);
+      cfg.setString(SECTION_TASK, name, KEY_PRELOAD_TASK, "preload" + (depth - 1));
+    }
+    setTask(cfg, SECTION_ROOT, "root", "is:open", null, null);
+    cfg.setStringList(SECTION_ROOT, "root", KEY_SUBTASK, subTasks);
+    return cfg;
+  }
+
+  public static Config heavyProperties(int properties) {
+    Config cfg = new Config();
+    setTask(cfg, SECTION_ROOT, "root", "is:open", null, null);
+    cfg.setString(SECTION_ROOT, "root", KEY_PROPERTIES_PREFIX + "p0", "${_name}");
+    for (int p = 1; p < properties; p++) {
+      cfg.setString(
+          SECTION_ROOT, "root", KEY_PROPERTIES_PREFIX + "p" + p, "${p" + (p - 1) + "}-" + p);
+    }
+    String last = "${p" + (properties - 1) + "}";
+
+    List<String> subTasks = new ArrayList<>();
+    for (int i = 0; i < PRELOADING_TASKS; i++) {
+      String name = "task" + i;
+      subTasks.add(name);
+      setTask(cfg, SECTION_TASK, name, "is:open", "label:" + last, "topic:${_name}-" + last);
+      cfg.setString(SECTION_TASK, name, KEY_READY_HINT, "${_name} waits on " + last);
+    }
+    cfg.setStringList(SECTION_ROOT, "root", KEY_SUBTASK, subTasks);
+    return cfg;
+  }
+
+  public static Config tasksFactories(int factories) {
+    Config cfg = new Config();
+    List<String> subTasksFactories = new ArrayList<>();
+    for (int f = 0; f < factories; f++) {
+      String tasksFactory = "tasks-factory" + f;
+      String namesFactory = "names-factory" + f;
+      subTasksFactories.add(tasksFactory);
+      setTask(cfg, SECTION_TASKS_FACTORY, tasksFactory, "is:open", "label:${_name}", null);
+      cfg.setString(SECTION_TASKS_FACTORY, tasksFactory, KEY_NAMES_FACTORY, namesFactory);
+
+      List<String> names = new ArrayList<>();
+      for (int n = 0; n < NAMES; n++) {
+        names.add("name" + f + "-" + n);
+      }
+      cfg.setString(SECTION_NAMES_FACTORY, namesFactory, KEY_TYPE, "static");
+      cfg.setStringList(SECTION_NAMES_FACTORY, namesFactory, KEY_NAME, names);
+    }
+    setTask(cfg, SECTION_ROOT, "root", "is:open", null, null);
+    cfg.setStringList(SECTION_ROOT, "root", KEY_SUBTASKS_FACTORY, subTasksFactories);
+    return cfg;
+  }
+
+  protected static void setTask(
+      Config cfg, String section, String name, String applicable, String pass, String fail) {
+    cfg.setString(section, name, KEY_APPLICABLE, applicable);
+    if (pass != null) {
+      cfg.setString(section, name, KEY_PASS, pass);
+    }
+    if (fail != null) {
+      cfg.setString(section, name, KEY_FAIL, fail);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.index.query.Matchable;
+import com.google.gerrit.index.query.OperatorPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.GroupCache;
+import com.google.gerrit.server.config.AllProjectsName;
+import com.google.gerrit.server.config.AllProjectsNameProvider;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.googlesource.gerrit.plugins.task.TaskTree.Node;
+import com.googlesource.gerrit.plugins.task.util.ThrowingProvider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.mockito.Mockito;
+
+/**
+ * Wires the task evaluation classes together without a Gerrit server.
+ *
+ * <p>Task configs are served from a generated Config instead of git, queries are "parsed" into
+ * fake predicates which match a deterministic half of the changes, and changes are created with
+ * ChangeData.createForTest(). Each call to newRequest() creates the per request objects the same
+ * way the plugin does for a change query.
+ */
+public class BenchmarkFixture {
+  public static final String PLUGIN = "task";
+  public static final AllProjectsName ALL_PROJECTS = new AllProjectsName("All-Projects");
+  public static final AllUsersName ALL_USERS = new AllUsersName("All-Users");
+  public static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  /** A per request TaskConfigCache serving the generated root config. */
+  public static class FakeTaskConfigCache extends TaskConfigCache {
+    protected final Config rootConfig;
+
+    public FakeTaskConfigCache(
+        AllProjectsNameProvider allProjectsNameProvider,
+        TaskPluginConfiguration config,
+        TaskMetrics metrics,
+        Config rootConfig) {
+      super(allProjectsNameProvider, null, null, null, null, config, metrics);
+      this.rootConfig = rootConfig;
+    }
+
+    @Override
+    protected TaskConfig loadTaskConfig(FileKey key) {
+      TaskConfig cfg = new TaskConfig(key, true, false);
+      // Like a hit in the TaskConfigFileCache, only the already parsed file is copied
+      cfg.loadFrom(TaskFileConstants.TASK_CFG.equals(key.file()) ? rootConfig : new Config());
+      return cfg;
+    }
+  }
+
+  /** A per request PredicateCache which creates FakePredicates instead of parsing queries. */
+  public static class FakePredicateCache extends PredicateCache {
+    public FakePredicateCache(
+        TaskPluginConfiguration config, CurrentUser user, TaskMetrics metrics) {
+      super(config, user, null, null, metrics, null);
+    }
+
+    @Override
+    protected ThrowingProvider<Predicate<ChangeData>, QueryParseException> getSharedOrParse(
+        String query) {
+      return new ThrowingProvider.Entry<>(new FakePredicate(query));
+    }
+
+    @Override
+    public boolean isShareable(String query) {
+      return true;
+    }
+  }
+
+  /** Matches about half of the changes, which ones depends on the query. */
+  public static class FakePredicate extends OperatorPredicate<ChangeData>
+      implements Matchable<ChangeData> {
+    protected final int hash;
+
+    public FakePredicate(String query) {
+      super("fake", query);
+      hash = query.hashCode();
+    }
+
+    @Override
+    public boolean match(ChangeData changeData) {
+      return ((hash + changeData.getId().get()) & 1) == 0;
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+
+  public final Config rootConfig;
+  public final TaskPluginConfiguration config;
+  public final AllProjectsNameProvider allProjectsNameProvider;
+  public final CurrentUser user;
+  public final PermissionBackend permissionBackend;
+  public final TaskExpression.Factory taskExpressionFactory;
+  public final TaskEvaluationExecutor executor;
+  public final TaskMetrics metrics;
+
+  public BenchmarkFixture(Config rootConfig) {
+    this.rootConfig = rootConfig;
+    allProjectsNameProvider = Mockito.mock(AllProjectsNameProvider.class);
+    Mockito.when(allProjectsNameProvider.get()).thenReturn(ALL_PROJECTS);
+    PluginConfigFactory pluginConfigFactory = Mockito.mock(PluginConfigFactory.class);
+    Mockito.when(pluginConfigFactory.getGlobalPluginConfig(PLUGIN)).thenReturn(new Config());
+    config =
+        new TaskPluginConfiguration(
+            PLUGIN, new Config(), pluginConfigFactory, allProjectsNameProvider);
+    user = Mockito.mock(CurrentUser.class);
+    permissionBackend = Mockito.mock(PermissionBackend.class, Mockito.RETURNS_DEEP_STUBS);
+
+    AccountCache accountCache = Mockito.mock(AccountCache.class);
+    GroupCache groupCache = Mockito.mock(GroupCache.class);
+    TaskReference.Factory taskReferenceFactory =
+        (relativeTo, reference) ->
+            new TaskReference(
+                new TaskKey.Builder(
+                    relativeTo, ALL_PROJECTS, ALL_USERS, accountCache, groupCache, config),
+                reference);
+    taskExpressionFactory =
+        (file, expression) -> new TaskExpression(taskReferenceFactory, file, expression);
+    // Never started, so all the changes are evaluated on the calling thread
+    executor = new TaskEvaluationExecutor(null, config);
+    metrics = new TaskMetrics(new DisabledMetricMaker(), config);
+  }
+
+  public FakeTaskConfigCache newTaskConfigCache() {
+    return new FakeTaskConfigCache(allProjectsNameProvider, config, metrics, rootConfig);
+  }
+
+  public Preloader newPreloader(TaskConfigCache taskConfigCache) {
+    return new Preloader(taskExpressionFactory, taskConfigCache);
+  }
+
+  public TaskTree newTaskTree(TaskConfigCache taskConfigCache) {
+    return new TaskTree(
+        null,
+        null,
+        null,
+        user,
+        null,
+        null,
+        null,
+        null,
+        metrics,
+        null,
+        new FakePredicateCache(config, user, metrics),
+        taskExpressionFactory,
+        this::newPreloader,
+        taskConfigCache,
+        null);
+  }
+
+  /** Create the factory evaluating the changes of one change query. */
+  public TaskPluginDefinedInfoFactory newRequest() {
+    return new TaskPluginDefinedInfoFactory(
+        PLUGIN,
+        this::newTaskTree,
+        new FakePredicateCache(config, user, metrics),
+        permissionBackend,
+        null,
+        newTaskConfigCache(),
+        executor,
+        null,
+        null,
+        config,
+        metrics);
+  }
+
+  public Modules.MyOptions newOptions() {
+    Modules.MyOptions options = new Modules.MyOptions(null);
+    options.all = true;
+    return options;
+  }
+
+  /** Get all the nodes of the tree for the change, loading every sub node along the way. */
+  public List<Node> getAllNodes(TaskTree tree, ChangeData changeData)
+      throws ConfigInvalidException, IOException {
+    List<Node> nodes = new ArrayList<>();
+    for (Node root : tree.getRootNodes(changeData)) {
+      addAllNodes(nodes, root);
+    }
+    return nodes;
+  }
+
+  protected void addAllNodes(List<Node> nodes, Node node)
+      throws ConfigInvalidException, IOException {
+    if (node instanceof Node.Invalid) {
+      return;
+    }
+    nodes.add(node);
+    if (!node.isDuplicate) {
+      for (Node subNode : node.getSubNodes()) {
+        addAllNodes(nodes, subNode);
+      }
+    }
+  }
+
+  /**
+   * Create changes without notes, so they only know their id and current patch set. Tasks must not
+   * use change properties or bulk match against them.
+   */
+  public static List<ChangeData> createChanges(int count) {
+    List<ChangeData> changes = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      changes.add(ChangeData.createForTest(PROJECT, Change.id(i), 1, ObjectId.zeroId()));
+    }
+    return changes;
+  }
+}
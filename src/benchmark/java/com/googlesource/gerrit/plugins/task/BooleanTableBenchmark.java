@@ -0,0 +1,137 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.common.BooleanTable;
+import com.google.gerrit.common.IntColumnBooleanTable;
+import com.google.gerrit.entities.Change;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the BooleanTable keyed by Change.Id to the IntColumnBooleanTable keyed by change
+ * numbers, as used by the MatchCache, filled with the results of matching queries against changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BooleanTableBenchmark {
+  @Param({"20"})
+  public int queries;
+
+  @Param({"100", "5000"})
+  public int changes;
+
+  protected String[] queryStrings;
+  protected Change.Id[] changeIds;
+  protected BooleanTable<String, Change.Id> booleanTable;
+  protected IntColumnBooleanTable<String> intColumnTable;
+
+  @Setup
+  public void setup() {
+    queryStrings = new String[queries];
+    for (int q = 0; q < queries; q++) {
+      queryStrings[q] = "label:Check-" + q + "=+1";
+    }
+    changeIds = new Change.Id[changes];
+    for (int c = 0; c < changes; c++) {
+      changeIds[c] = Change.id(1000 + c * 3);
+    }
+    booleanTable = fill(new BooleanTable<>());
+    intColumnTable = fill(new IntColumnBooleanTable<>());
+  }
+
+  @Benchmark
+  public BooleanTable<String, Change.Id> booleanTablePut() {
+    return fill(new BooleanTable<>());
+  }
+
+  @Benchmark
+  public IntColumnBooleanTable<String> intColumnTablePut() {
+    return fill(new IntColumnBooleanTable<>());
+  }
+
+  @Benchmark
+  public int booleanTableGet() {
+    int matches = 0;
+    for (String query : queryStrings) {
+      for (Change.Id id : changeIds) {
+        if (booleanTable.get(query, id)) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+
+  @Benchmark
+  public int intColumnTableGet() {
+    int matches = 0;
+    for (String query : queryStrings) {
+      for (Change.Id id : changeIds) {
+        if (intColumnTable.get(query, id.get())) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /** Get the results of each query by its row id, as MatchCache.matchAll() does. */
+  @Benchmark
+  public int intColumnTableGetByRowId() {
+    int matches = 0;
+    for (String query : queryStrings) {
+      int row = intColumnTable.getRowId(query);
+      for (Change.Id id : changeIds) {
+        if (intColumnTable.get(row, id.get())) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+
+  protected BooleanTable<String, Change.Id> fill(BooleanTable<String, Change.Id> table) {
+    for (int q = 0; q < queries; q++) {
+      for (Change.Id id : changeIds) {
+        table.put(queryStrings[q], id, ((q + id.get()) & 1) == 0);
+      }
+    }
+    return table;
+  }
+
+  protected IntColumnBooleanTable<String> fill(IntColumnBooleanTable<String> table) {
+    for (int q = 0; q < queries; q++) {
+      for (Change.Id id : changeIds) {
+        table.put(queryStrings[q], id.get(), ((q + id.get()) & 1) == 0);
+      }
+    }
+    return table;
+  }
+}
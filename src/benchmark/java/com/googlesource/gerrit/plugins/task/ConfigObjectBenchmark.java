@@ -0,0 +1,138 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.common.Container;
+import com.googlesource.gerrit.plugins.task.TaskConfig.NamesFactory;
+import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares hash lookups of task config objects to lookups of the same fields compared by the
+ * reflective Container, which the config objects used to rely on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConfigObjectBenchmark {
+  public static class ReflectiveTask extends Container {
+    public TaskKey key;
+
+    public ReflectiveTask(Task task) {
+      key = task.key;
+    }
+  }
+
+  public static class ReflectiveNamesFactory extends Container {
+    public String changes;
+    public List<String> names;
+    public String type;
+    public String plugin;
+    public String provider;
+    public List<String> args;
+
+    public ReflectiveNamesFactory(NamesFactory namesFactory) {
+      changes = namesFactory.changes;
+      names = namesFactory.names;
+      type = namesFactory.type;
+      plugin = namesFactory.plugin;
+      provider = namesFactory.provider;
+      args = namesFactory.args;
+    }
+  }
+
+  @Param({"10", "100"})
+  public int size;
+
+  protected Set<Task> taskSet = new HashSet<>();
+  protected Set<NamesFactory> namesFactorySet = new HashSet<>();
+  protected Set<ReflectiveTask> reflectiveTaskSet = new HashSet<>();
+  protected Set<ReflectiveNamesFactory> reflectiveNamesFactorySet = new HashSet<>();
+
+  // Copies, so that lookups can not be answered by identity
+  protected List<Task> tasks = new ArrayList<>();
+  protected List<NamesFactory> namesFactories = new ArrayList<>();
+  protected List<ReflectiveTask> reflectiveTasks = new ArrayList<>();
+  protected List<ReflectiveNamesFactory> reflectiveNamesFactories = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    FileKey file =
+        FileKey.create(BenchmarkFixture.PROJECT, "refs/meta/config", TaskFileConstants.TASK_CFG);
+    TaskConfig cfg = new TaskConfig(file, true, false);
+    cfg.loadFrom(BenchmarkConfigs.tasksFactories(size));
+    for (int f = 0; f < size; f++) {
+      NamesFactory namesFactory = cfg.getNamesFactory("names-factory" + f);
+      namesFactorySet.add(namesFactory);
+      namesFactories.add(cfg.new NamesFactory(namesFactory));
+      reflectiveNamesFactorySet.add(new ReflectiveNamesFactory(namesFactory));
+      reflectiveNamesFactories.add(new ReflectiveNamesFactory(namesFactory));
+
+      Task task = cfg.new Task(cfg.getTasksFactory("tasks-factory" + f), "name" + f);
+      taskSet.add(task);
+      tasks.add(cfg.new Task(task));
+      reflectiveTaskSet.add(new ReflectiveTask(task));
+      reflectiveTasks.add(new ReflectiveTask(task));
+    }
+  }
+
+  @Benchmark
+  public int taskLookup() {
+    return count(taskSet, tasks);
+  }
+
+  @Benchmark
+  public int reflectiveTaskLookup() {
+    return count(reflectiveTaskSet, reflectiveTasks);
+  }
+
+  @Benchmark
+  public int namesFactoryLookup() {
+    return count(namesFactorySet, namesFactories);
+  }
+
+  @Benchmark
+  public int reflectiveNamesFactoryLookup() {
+    return count(reflectiveNamesFactorySet, reflectiveNamesFactories);
+  }
+
+  protected static <T> int count(Set<T> set, List<T> lookups) {
+    int found = 0;
+    for (T lookup : lookups) {
+      if (set.contains(lookup)) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.googlesource.gerrit.plugins.task.util.ThrowingProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures matching task queries against changes through the MatchCache, for a request which has
+ * not matched anything yet (every query and sub-predicate is a miss) and for one which already
+ * matched every query (every query is a hit). Each query is an 'and' of a clause shared with other
+ * queries and of a clause of its own, so that the cached results of shared sub-predicates are
+ * exercised too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MatchCacheBenchmark {
+  /** A FakePredicateCache which creates an 'and' of FakePredicates for each word of a query. */
+  public static class CompoundFakePredicateCache extends BenchmarkFixture.FakePredicateCache {
+    public CompoundFakePredicateCache(
+        TaskPluginConfiguration config, CurrentUser user, TaskMetrics metrics) {
+      super(config, user, metrics);
+    }
+
+    @Override
+    protected ThrowingProvider<Predicate<ChangeData>, QueryParseException> getSharedOrParse(
+        String query) {
+      List<Predicate<ChangeData>> operands = new ArrayList<>();
+      for (String operand : query.split(" ")) {
+        operands.add(new BenchmarkFixture.FakePredicate(operand));
+      }
+      return new ThrowingProvider.Entry<>(Predicate.and(operands));
+    }
+  }
+
+  /** A MatchCache which skips loading the ChangeData fields, the test changes have none. */
+  public static class NoPrefetchMatchCache extends MatchCache {
+    public NoPrefetchMatchCache(PredicateCache predicateCache, TaskMetrics metrics) {
+      super(predicateCache, metrics);
+    }
+
+    @Override
+    protected void prefetch(Predicate<ChangeData> predicate, List<ChangeData> changes) {}
+  }
+
+  @Param({"20", "200"})
+  public int queries;
+
+  @Param({"5"})
+  public int sharedClauses;
+
+  @Param({"100"})
+  public int changes;
+
+  protected BenchmarkFixture fixture;
+  protected String[] queryStrings;
+  protected List<ChangeData> changeDatas;
+  protected MatchCache warmCache;
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new BenchmarkFixture(BenchmarkConfigs.wideTree(1));
+    queryStrings = new String[queries];
+    for (int q = 0; q < queries; q++) {
+      queryStrings[q] = "shared-" + (q % sharedClauses) + " query-" + q;
+    }
+    changeDatas = BenchmarkFixture.createChanges(changes);
+    warmCache = newMatchCache();
+    matchEach(warmCache);
+  }
+
+  @Benchmark
+  public int matchMisses() throws Exception {
+    return matchEach(newMatchCache());
+  }
+
+  @Benchmark
+  public int matchHits() throws Exception {
+    return matchEach(warmCache);
+  }
+
+  /** Fill the results of each query for all the changes at once, then match each change. */
+  @Benchmark
+  public int matchAllThenMatch() throws Exception {
+    MatchCache matchCache = newMatchCache();
+    for (String query : queryStrings) {
+      matchCache.matchAll(query, changeDatas, true);
+    }
+    return matchEach(matchCache);
+  }
+
+  protected MatchCache newMatchCache() {
+    return new NoPrefetchMatchCache(
+        new CompoundFakePredicateCache(fixture.config, fixture.user, fixture.metrics),
+        fixture.metrics);
+  }
+
+  protected int matchEach(MatchCache matchCache) throws Exception {
+    int matches = 0;
+    for (String query : queryStrings) {
+      for (ChangeData changeData : changeDatas) {
+        if (matchCache.match(changeData, query, true)) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.task;
+
+import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares Preloader.preloadFrom(), which merges the fields of a task definition explicitly, to
+ * the reflective merge it used to do, along a chain of preload-tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PreloadBenchmark {
+  /** The reflective merge of Preloader.preloadFrom() before it merged each field explicitly. */
+  public static class ReflectivePreloader {
+    public static Task preloadFrom(Task definition, Task preloadFrom) {
+      Task preloadTo = definition.config.new Task(definition.subSection);
+      for (Field field : definition.getClass().getFields()) {
+        if ("config".equals(field.getName())) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          preloadField(field, definition, preloadFrom, preloadTo);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return preloadTo;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static void preloadField(
+        Field field, Task definition, Task preloadFrom, Task preloadTo)
+        throws IllegalAccessException {
+      Object pre = field.get(preloadFrom);
+      Object val = field.get(definition);
+      if (val == null) {
+        field.set(preloadTo, pre);
+      } else if (pre == null) {
+        field.set(preloadTo, val);
+      } else if (val instanceof List) {
+        field.set(preloadTo, Preloader.preloadListFrom((List<Object>) val, (List<Object>) pre));
+      } else if (val instanceof Map) {
+        field.set(
+            preloadTo,
+            Preloader.preloadMapFrom((Map<Object, Object>) val, (Map<Object, Object>) pre));
+      } else {
+        field.set(preloadTo, val);
+      }
+    }
+  }
+
+  @Param({"10", "100"})
+  public int depth;
+
+  /** The definitions of the chain, each preloading from the previous one. */
+  protected List<Task> definitions = new ArrayList<>();
+  /** The preloaded tasks of the chain, each to be preloaded into the next definition. */
+  protected List<Task> preloaded = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    FileKey file =
+        FileKey.create(BenchmarkFixture.PROJECT, "refs/meta/config", TaskFileConstants.TASK_CFG);
+    TaskConfig cfg = new TaskConfig(file, true, false);
+    cfg.loadFrom(BenchmarkConfigs.deepPreload(depth));
+    Task previous = null;
+    for (int d = 0; d < depth; d++) {
+      Task definition = cfg.getOptionalTask("preload" + d).get();
+      definitions.add(definition);
+      previous = previous == null ? definition : Preloader.preloadFrom(definition, previous);
+      preloaded.add(previous);
+    }
+  }
+
+  @Benchmark
+  public void preloadFrom(Blackhole blackhole) {
+    for (int d = 1; d < depth; d++) {
+      blackhole.consume(Preloader.preloadFrom(definitions.get(d), preloaded.get(d - 1)));
+    }
+  }
+
+  @Benchmark
+  public void reflectivePreloadFrom(Blackhole blackhole) {
+    for (int d = 1; d < depth; d++) {
+      blackhole.consume(ReflectivePreloader.preloadFrom(definitions.get(d), preloaded.get(d - 1)));
+    }
+  }
+}
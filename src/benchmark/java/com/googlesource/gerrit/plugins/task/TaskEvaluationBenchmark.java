@@ -0,0 +1,120 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.server.query.change.ChangeData;
+import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
+import com.googlesource.gerrit.plugins.task.TaskTree.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the task evaluation hot paths against synthetic task configs.
+ *
+ * <p>Run with: bazel run plugins/task:benchmarks -- [jmh options]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TaskEvaluationBenchmark {
+  @Param({"WIDE_TREE", "DEEP_TREE", "DEEP_PRELOAD", "HEAVY_PROPERTIES", "TASKS_FACTORIES"})
+  public BenchmarkConfigs.Shape shape;
+
+  @Param({"10", "100"})
+  public int size;
+
+  @Param({"20"})
+  public int changes;
+
+  protected BenchmarkFixture fixture;
+  protected List<ChangeData> changeDatas;
+  protected TaskConfigCache taskConfigCache;
+  protected List<Task> definitions;
+  protected List<Node> nodes;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    fixture = new BenchmarkFixture(BenchmarkConfigs.create(shape, size));
+    changeDatas = BenchmarkFixture.createChanges(changes);
+    taskConfigCache = fixture.newTaskConfigCache();
+
+    TaskConfig root = taskConfigCache.getRootConfig();
+    definitions = new ArrayList<>(root.getTasks(TaskConfig.SECTION_ROOT));
+    definitions.addAll(root.getTasks(TaskConfig.SECTION_TASK));
+
+    nodes = fixture.getAllNodes(fixture.newTaskTree(taskConfigCache), changeDatas.get(0));
+  }
+
+  /** Preload every task of the config with a new (per request) Preloader. */
+  @Benchmark
+  public void preload(Blackhole blackhole) throws Exception {
+    Preloader preloader = fixture.newPreloader(taskConfigCache);
+    for (Task definition : definitions) {
+      blackhole.consume(preloader.preload(definition));
+    }
+  }
+
+  /**
+   * Load every node of a new tree. Run with "-prof gc" to see the memory allocated for the nodes
+   * of a tree.
+   */
+  @Benchmark
+  public List<Node> loadTree() throws Exception {
+    return fixture.getAllNodes(fixture.newTaskTree(taskConfigCache), changeDatas.get(0));
+  }
+
+  /** Refresh every node of an already loaded tree, re-expanding their properties. */
+  @Benchmark
+  public void refreshTask(Blackhole blackhole) {
+    for (Node node : nodes) {
+      node.refreshTask();
+      blackhole.consume(node.task);
+    }
+  }
+
+  /**
+   * Evaluate the task attributes of every change in a new request.
+   *
+   * <p>The changes are evaluated one at a time since the fake changes have no notes to bulk load
+   * for the root applicability matching of a multi-change request.
+   */
+  @Benchmark
+  public void createAttributes(Blackhole blackhole) {
+    TaskPluginDefinedInfoFactory factory = fixture.newRequest();
+    Modules.MyOptions options = fixture.newOptions();
+    for (ChangeData changeData : changeDatas) {
+      blackhole.consume(
+          factory.createPluginDefinedInfos(Collections.singletonList(changeData), options));
+    }
+  }
+}
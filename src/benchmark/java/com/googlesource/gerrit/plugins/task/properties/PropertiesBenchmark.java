@@ -0,0 +1,144 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.task.properties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the Matcher and of the expansion of properties, from precompiled Templates and by
+ * searching every text with a Matcher, against texts referencing chains of properties.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PropertiesBenchmark {
+  /** An Expander which searches every text with a Matcher, as all expansions used to. */
+  public static class MatcherExpander extends Expander {
+    public MatcherExpander(Map<String, String> valueByName) {
+      super(valueByName::get);
+    }
+
+    @Override
+    public String expandText(String text) {
+      return text == null ? null : expandTextWithMatcher(text);
+    }
+  }
+
+  /** The number of properties, each one referencing the previous one. */
+  @Param({"10", "100"})
+  public int properties;
+
+  protected Map<String, String> valueByName = new HashMap<>();
+  protected List<String> texts = new ArrayList<>();
+  protected List<Template> templates = new ArrayList<>();
+  protected Map<String, Template> templateByText = new HashMap<>();
+  protected Expander expander;
+  protected Expander matcherExpander;
+
+  @Setup
+  public void setup() {
+    valueByName.put("p0", "value");
+    for (int p = 1; p < properties; p++) {
+      valueByName.put("p" + p, "${p" + (p - 1) + "}-" + p);
+    }
+    for (int p = 0; p < properties; p++) {
+      texts.add("label:${p" + p + "} topic:${p" + (properties - 1 - p) + "}-x");
+      texts.add("status:open project:x"); // No reference, like most texts
+    }
+    for (String text : texts) {
+      templates.add(Template.compile(text));
+    }
+    expander = new Expander(valueByName::get);
+    expander.setTemplateByText(t -> templateByText.computeIfAbsent(t, Template::compile));
+    matcherExpander = new MatcherExpander(valueByName);
+  }
+
+  @Benchmark
+  public void matcherFind(Blackhole blackhole) {
+    for (String text : texts) {
+      Matcher m = new Matcher(text);
+      while (m.find()) {
+        blackhole.consume(m.getName());
+        m.skip();
+      }
+    }
+  }
+
+  @Benchmark
+  public void matcherAppend(Blackhole blackhole) {
+    for (String text : texts) {
+      Matcher m = new Matcher(text);
+      StringBuilder out = new StringBuilder();
+      while (m.find()) {
+        m.appendValue(out, "value");
+      }
+      m.appendTail(out);
+      blackhole.consume(out);
+    }
+  }
+
+  @Benchmark
+  public void templateCompile(Blackhole blackhole) {
+    for (String text : texts) {
+      blackhole.consume(Template.compile(text));
+    }
+  }
+
+  @Benchmark
+  public void templateAppend(Blackhole blackhole) {
+    StringBuilder out = new StringBuilder();
+    for (Template template : templates) {
+      out.setLength(0);
+      template.appendTo(out, name -> "value");
+      blackhole.consume(out.length());
+    }
+  }
+
+  /** Expand every text for a new change, reloading the values of the properties. */
+  @Benchmark
+  public void expandWithTemplates(Blackhole blackhole) {
+    expand(expander, blackhole);
+  }
+
+  @Benchmark
+  public void expandWithMatcher(Blackhole blackhole) {
+    expand(matcherExpander, blackhole);
+  }
+
+  protected void expand(Expander expander, Blackhole blackhole) {
+    expander.clear();
+    for (String text : texts) {
+      blackhole.consume(expander.expandText(text));
+    }
+  }
+}
@@ -0,0 +1,158 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.common;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A BooleanTable with int columns, such as change numbers, which never boxes them.
+ *
+ * <p>Columns are mapped to positions with an open addressing int hash map, and each row stores two
+ * bits per position in a long[]: whether the position has a value, and the value. Rows get dense
+ * ids, which may be used to look up a row once for many columns.
+ */
+public class IntColumnBooleanTable<R> {
+  public static final int NO_ROW = -1;
+
+  protected static final int NO_POSITION = -1;
+
+  protected Map<R, Integer> idByRow = new HashMap<>();
+  protected long[][] rows = new long[8][];
+  protected int numberOfRows;
+
+  protected int[] columns = new int[16];
+  protected int[] positions = newPositions(16);
+  protected int numberOfColumns;
+
+  /** Get the id of row, or NO_ROW if it has no values. */
+  public int getRowId(R r) {
+    Integer id = idByRow.get(r);
+    return id == null ? NO_ROW : id;
+  }
+
+  public int getOrCreateRowId(R r) {
+    Integer id = idByRow.get(r);
+    if (id == null) {
+      if (numberOfRows == rows.length) {
+        rows = Arrays.copyOf(rows, rows.length * 2);
+      }
+      id = numberOfRows++;
+      rows[id] = new long[1];
+      idByRow.put(r, id);
+    }
+    return id;
+  }
+
+  public void put(R r, int c, Boolean v) {
+    put(getOrCreateRowId(r), c, v);
+  }
+
+  public void put(int rowId, int c, Boolean v) {
+    int bit = getOrCreatePosition(c) * 2;
+    int word = bit >>> 6;
+    long[] row = rows[rowId];
+    if (word >= row.length) {
+      row = rows[rowId] = Arrays.copyOf(row, Math.max(word + 1, row.length * 2));
+    }
+    long hasValue = 1L << bit;
+    long value = 1L << (bit + 1);
+    if (v == null) {
+      row[word] &= ~(hasValue | value);
+    } else if (v) {
+      row[word] |= hasValue | value;
+    } else {
+      row[word] = (row[word] | hasValue) & ~value;
+    }
+  }
+
+  public Boolean get(R r, int c) {
+    return get(getRowId(r), c);
+  }
+
+  public Boolean get(int rowId, int c) {
+    if (rowId == NO_ROW) {
+      return null;
+    }
+    int position = getPosition(c);
+    if (position == NO_POSITION) {
+      return null;
+    }
+    int bit = position * 2;
+    int word = bit >>> 6;
+    long[] row = rows[rowId];
+    if (word >= row.length || (row[word] & (1L << bit)) == 0) {
+      return null;
+    }
+    return (row[word] & (1L << (bit + 1))) != 0;
+  }
+
+  protected int getPosition(int c) {
+    int mask = columns.length - 1;
+    for (int i = hash(c) & mask; ; i = (i + 1) & mask) {
+      if (positions[i] == NO_POSITION || columns[i] == c) {
+        return positions[i];
+      }
+    }
+  }
+
+  protected int getOrCreatePosition(int c) {
+    int mask = columns.length - 1;
+    int i = hash(c) & mask;
+    for (; positions[i] != NO_POSITION; i = (i + 1) & mask) {
+      if (columns[i] == c) {
+        return positions[i];
+      }
+    }
+    int position = numberOfColumns++;
+    columns[i] = c;
+    positions[i] = position;
+    if (numberOfColumns * 2 > columns.length) {
+      resizeColumns();
+    }
+    return position;
+  }
+
+  protected void resizeColumns() {
+    int[] oldColumns = columns;
+    int[] oldPositions = positions;
+    columns = new int[oldColumns.length * 2];
+    positions = newPositions(columns.length);
+    int mask = columns.length - 1;
+    for (int o = 0; o < oldColumns.length; o++) {
+      if (oldPositions[o] != NO_POSITION) {
+        int i = hash(oldColumns[o]) & mask;
+        while (positions[i] != NO_POSITION) {
+          i = (i + 1) & mask;
+        }
+        columns[i] = oldColumns[o];
+        positions[i] = oldPositions[o];
+      }
+    }
+  }
+
+  protected static int[] newPositions(int size) {
+    int[] positions = new int[size];
+    Arrays.fill(positions, NO_POSITION);
+    return positions;
+  }
+
+  /** Spread the bits of sequential ints, such as change numbers, over the whole table. */
+  protected static int hash(int c) {
+    int h = c * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+/**
+ * A server wide index of the applicability of task queries to branches.
+ *
+ * <p>Only applicable queries which are cacheable by branch (see
+ * PredicateCache.isCacheableByBranch()), do not depend on the calling user, and do not use
+ * properties are recorded. The result of such a query is the same for every change of a branch, so
+ * once one change of a branch has been matched, definitions which are not applicable to the branch
+ * can be skipped for all its other changes without creating their nodes.
+ */
+@Singleton
+public class BranchApplicabilityCache {
+  protected static final String APPLICABLE_BY_BRANCH = "task_branch_applicability";
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(APPLICABLE_BY_BRANCH, Key.class, Boolean.class).maximumWeight(16 * 1024);
+    }
+  }
+
+  @AutoValue
+  public abstract static class Key {
+    public static Key create(BranchNameKey branch, String applicable) {
+      return new AutoValue_BranchApplicabilityCache_Key(branch, applicable);
+    }
+
+    public abstract BranchNameKey branch();
+
+    public abstract String applicable();
+  }
+
+  protected final Cache<Key, Boolean> applicableByBranch;
+
+  @Inject
+  public BranchApplicabilityCache(
+      @Named(APPLICABLE_BY_BRANCH) Cache<Key, Boolean> applicableByBranch) {
+    this.applicableByBranch = applicableByBranch;
+  }
+
+  /** Get whether applicable matches the changes of branch, or null if it is not known yet. */
+  public Boolean getIfPresent(BranchNameKey branch, String applicable) {
+    return applicableByBranch.getIfPresent(Key.create(branch, applicable));
+  }
+
+  public void put(BranchNameKey branch, String applicable, boolean isApplicable) {
+    applicableByBranch.put(Key.create(branch, applicable), isApplicable);
+  }
+}
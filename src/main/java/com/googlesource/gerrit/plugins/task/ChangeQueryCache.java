@@ -0,0 +1,173 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.ChangeIndexedListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.CacheRemovalListener;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A short lived server wide cache of the changes matched by names-factory 'changes' queries.
+ *
+ * <p>Results are cached per query and per user since the changes a query returns depend on their
+ * visibility to the user. An entry is dropped as soon as any of its changes is reindexed, which is
+ * found from an index of the keys of the entries by change, so that index events do not scan the
+ * cache. However a change which did not match a query when it was cached, and was since created or
+ * updated to match it, only shows up in the query once the entry expires. So does a change which
+ * is reindexed after the query ran but before its result is put, since no entry could be dropped
+ * yet, so staleness is only bounded by the expiry of the entries (expireAfterWrite).
+ */
+@Singleton
+public class ChangeQueryCache
+    implements ChangeIndexedListener,
+        CacheRemovalListener<ChangeQueryCache.Key, ImmutableList<Change>> {
+  protected static final String CHANGES_BY_QUERY = "task_change_queries";
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(CHANGES_BY_QUERY, Key.class, new TypeLiteral<ImmutableList<Change>>() {})
+          .maximumWeight(64 * 1024)
+          .expireAfterWrite(Duration.ofSeconds(10))
+          .weigher(ChangesWeigher.class);
+      DynamicSet.bind(binder(), ChangeIndexedListener.class).to(ChangeQueryCache.class);
+      DynamicSet.bind(binder(), CacheRemovalListener.class).to(ChangeQueryCache.class);
+    }
+  }
+
+  @AutoValue
+  public abstract static class Key {
+    public static Key create(String query, CurrentUser user) {
+      return new AutoValue_ChangeQueryCache_Key(query, user.getCacheKey());
+    }
+
+    public abstract String query();
+
+    public abstract Object user();
+  }
+
+  /** Weigh entries by their number of changes. */
+  public static class ChangesWeigher implements Weigher<Key, ImmutableList<Change>> {
+    @Override
+    public int weigh(Key key, ImmutableList<Change> changes) {
+      return 1 + changes.size();
+    }
+  }
+
+  protected final String pluginName;
+  protected final Cache<Key, ImmutableList<Change>> changesByQuery;
+  /** The keys of the cached entries of each change, the sets are only modified in compute(). */
+  protected final Map<Change.Id, Set<Key>> keysByChange = new ConcurrentHashMap<>();
+
+  @Inject
+  public ChangeQueryCache(
+      @PluginName String pluginName,
+      @Named(CHANGES_BY_QUERY) Cache<Key, ImmutableList<Change>> changesByQuery) {
+    this.pluginName = pluginName;
+    this.changesByQuery = changesByQuery;
+  }
+
+  /** Get copies of the cached changes so that callers are free to modify them. */
+  public List<Change> getIfPresent(String query, CurrentUser user) {
+    ImmutableList<Change> changes = changesByQuery.getIfPresent(Key.create(query, user));
+    return changes == null ? null : changes.stream().map(Change::new).collect(toImmutableList());
+  }
+
+  public void put(String query, CurrentUser user, List<ChangeData> changeDataList) {
+    Key key = Key.create(query, user);
+    ImmutableList<Change> changes =
+        changeDataList.stream().map(cd -> new Change(cd.change())).collect(toImmutableList());
+    for (Change change : changes) {
+      keysByChange.compute(
+          change.getId(),
+          (id, keys) -> {
+            keys = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            keys.add(key);
+            return keys;
+          });
+    }
+    changesByQuery.put(key, changes);
+    // A change reindexed since it was indexed above has dropped its keys, maybe before the entry
+    // was put, in which case the entry must be dropped now since no later reindex would find it
+    for (Change change : changes) {
+      Set<Key> keys = keysByChange.get(change.getId());
+      if (keys == null || !keys.contains(key)) {
+        changesByQuery.invalidate(key);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void onChangeIndexed(String projectName, int id) {
+    invalidate(Change.id(id));
+  }
+
+  @Override
+  public void onChangeDeleted(int id) {
+    invalidate(Change.id(id));
+  }
+
+  protected void invalidate(Change.Id id) {
+    Set<Key> keys = keysByChange.remove(id);
+    if (keys != null) {
+      changesByQuery.invalidateAll(keys);
+    }
+  }
+
+  /** Unindex entries once they expire or are evicted. */
+  @Override
+  public void onRemoval(
+      String pluginName,
+      String cacheName,
+      RemovalNotification<Key, ImmutableList<Change>> notification) {
+    if (!this.pluginName.equals(pluginName)
+        || !CHANGES_BY_QUERY.equals(cacheName)
+        || notification.getCause() == RemovalCause.REPLACED) {
+      return;
+    }
+    Key key = notification.getKey();
+    for (Change change : notification.getValue()) {
+      keysByChange.computeIfPresent(
+          change.getId(),
+          (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+          });
+    }
+  }
+}
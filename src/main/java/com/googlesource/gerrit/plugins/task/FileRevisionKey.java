@@ -0,0 +1,30 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.auto.value.AutoValue;
+import org.eclipse.jgit.lib.ObjectId;
+
+/** An immutable reference to a file in gerrit repo as of a specific revision. */
+@AutoValue
+public abstract class FileRevisionKey {
+  public static FileRevisionKey create(FileKey file, ObjectId revision) {
+    return new AutoValue_FileRevisionKey(file, revision.copy());
+  }
+
+  public abstract FileKey file();
+
+  public abstract ObjectId revision();
+}
@@ -14,21 +14,38 @@
 
 package com.googlesource.gerrit.plugins.task;
 
-import com.google.gerrit.entities.Change;
 import com.google.gerrit.exceptions.StorageException;
-import com.google.gerrit.index.query.Matchable;
+import com.google.gerrit.index.query.NotPredicate;
+import com.google.gerrit.index.query.OrPredicate;
+import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
 import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.LabelPredicate;
+import com.googlesource.gerrit.plugins.task.PredicateCosts.CostOrdered;
 import com.googlesource.gerrit.plugins.task.statistics.HitBooleanTable;
 import com.googlesource.gerrit.plugins.task.statistics.StopWatch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
+/**
+ * Per request cache of the results of matching task queries against changes.
+ *
+ * <p>Results are keyed by the canonical form of the predicates of queries (see
+ * PredicateCache.getCanonical()), so queries only differing by the order of their operands share
+ * their results. Besides whole queries, the results of their sub-predicates are cached too, so that
+ * a clause shared by many different queries, such as 'label:Code-Review=+2', is only matched once
+ * per change.
+ */
 public class MatchCache {
-  protected final HitBooleanTable<String, Change.Id> resultByChangeByQuery =
-      new HitBooleanTable<>();
+  protected final HitBooleanTable<String> resultByChangeByQuery = new HitBooleanTable<>();
+  protected final HitBooleanTable<String> resultByChangeBySubPredicate = new HitBooleanTable<>();
   protected final PredicateCache predicateCache;
+  protected final TaskMetrics metrics;
 
-  public MatchCache(PredicateCache predicateCache) {
+  public MatchCache(PredicateCache predicateCache, TaskMetrics metrics) {
     this.predicateCache = predicateCache;
+    this.metrics = metrics;
   }
 
   public Boolean matchOrNull(ChangeData changeData, String query, boolean isVisible) {
@@ -45,23 +62,124 @@ public class MatchCache {
     if (query == null || "true".equalsIgnoreCase(query)) {
       return true;
     }
-    Boolean isMatched = resultByChangeByQuery.get(query, changeData.getId());
-    if (isMatched == null) {
-      Matchable<ChangeData> matchable = predicateCache.getPredicate(query, isVisible).asMatchable();
+    String canonical = predicateCache.getCanonicalQuery(query, isVisible);
+    int change = changeData.getId().get();
+    Boolean isMatched = resultByChangeByQuery.get(canonical, change);
+    if (isMatched != null) {
+      metrics.matchCacheHits.increment();
+    } else {
+      metrics.matchCacheMisses.increment();
+      Predicate<ChangeData> predicate = predicateCache.getPredicate(query, isVisible);
+      try (StopWatch stopWatch =
+          resultByChangeByQuery.createLoadingStopWatch(canonical, change, isVisible)) {
+        isMatched = matchSubPredicate(predicate, changeData, false);
+        resultByChangeByQuery.put(canonical, change, isMatched);
+      }
+    }
+    return isMatched;
+  }
+
+  /**
+   * Match query against all the changes in one pass, filling the query's row of the table for the
+   * changes which have not been matched yet. The ChangeData fields needed by the query are loaded
+   * in bulk before matching.
+   */
+  @SuppressWarnings("try")
+  public void matchAll(String query, Collection<ChangeData> changes, boolean isVisible)
+      throws StorageException, QueryParseException {
+    if (query == null || "true".equalsIgnoreCase(query)) {
+      return;
+    }
+    String canonical = predicateCache.getCanonicalQuery(query, isVisible);
+    int row = resultByChangeByQuery.getOrCreateRowId(canonical);
+    List<ChangeData> unmatched = new ArrayList<>(changes.size());
+    for (ChangeData changeData : changes) {
+      if (resultByChangeByQuery.get(row, changeData.getId().get()) == null) {
+        unmatched.add(changeData);
+      }
+    }
+    if (unmatched.isEmpty()) {
+      return;
+    }
+    Predicate<ChangeData> predicate = predicateCache.getPredicate(query, isVisible);
+    prefetch(predicate, unmatched);
+    for (ChangeData changeData : unmatched) {
+      int change = changeData.getId().get();
       try (StopWatch stopWatch =
-          resultByChangeByQuery.createLoadingStopWatch(query, changeData.getId(), isVisible)) {
-        isMatched = matchable.match(changeData);
-        resultByChangeByQuery.put(query, changeData.getId(), isMatched);
+          resultByChangeByQuery.createLoadingStopWatch(canonical, change, isVisible)) {
+        resultByChangeByQuery.put(row, change, matchSubPredicate(predicate, changeData, false));
+        metrics.matchCacheMisses.increment();
+      } catch (RuntimeException e) {
+        // Leave it unmatched, match() will retry and report the failure for this change only
+      }
+    }
+  }
+
+  /** Match predicate, or get its result if it was already matched against this change. */
+  protected boolean matchSubPredicate(
+      Predicate<ChangeData> predicate, ChangeData changeData, boolean isSampled) {
+    String key = predicateCache.getCanonical(predicate);
+    int row = resultByChangeBySubPredicate.getOrCreateRowId(key);
+    Boolean isMatched = resultByChangeBySubPredicate.get(row, changeData.getId().get());
+    if (isMatched == null) {
+      if (PredicateCache.isCompound(predicate)) {
+        isMatched = matchCompound(predicate, changeData);
+      } else if (predicateCache.predicateCosts != null) {
+        isMatched = predicateCache.predicateCosts.matchOperand(predicate, changeData, isSampled);
+      } else {
+        isMatched = predicate.asMatchable().match(changeData);
       }
+      resultByChangeBySubPredicate.put(row, changeData.getId().get(), isMatched);
     }
     return isMatched;
   }
 
+  protected boolean matchCompound(Predicate<ChangeData> predicate, ChangeData changeData) {
+    if (predicate instanceof CostOrdered) {
+      return ((CostOrdered) predicate).match(changeData, this::matchSubPredicate);
+    }
+    if (predicate.getClass() == NotPredicate.class) {
+      return !matchSubPredicate(predicate.getChild(0), changeData, false);
+    }
+    boolean isOr = predicate.getClass() == OrPredicate.class;
+    for (Predicate<ChangeData> subPred : predicate.getChildren()) {
+      if (matchSubPredicate(subPred, changeData, false) == isOr) {
+        return isOr;
+      }
+    }
+    return !isOr;
+  }
+
+  protected void prefetch(Predicate<ChangeData> predicate, List<ChangeData> changes) {
+    ChangeData.ensureChangeLoaded(changes);
+    ChangeData.ensureCurrentPatchSetLoaded(changes);
+    if (hasLabelPredicate(predicate)) {
+      ChangeData.ensureCurrentApprovalsLoaded(changes);
+    }
+  }
+
+  protected static boolean hasLabelPredicate(Predicate<ChangeData> predicate) {
+    if (predicate instanceof LabelPredicate) {
+      return true;
+    }
+    for (Predicate<ChangeData> subPred : predicate.getChildren()) {
+      if (hasLabelPredicate(subPred)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void initStatistics(int summaryCount) {
     resultByChangeByQuery.initStatistics(summaryCount);
+    resultByChangeBySubPredicate.initStatistics(summaryCount);
   }
 
   public Object getStatistics() {
     return resultByChangeByQuery.getStatistics();
   }
+
+  public Object getSubPredicateStatistics() {
+    return resultByChangeBySubPredicate.getStatistics();
+  }
 }
@@ -14,21 +14,27 @@
 
 package com.googlesource.gerrit.plugins.task;
 
+import static com.google.gerrit.server.config.ConfigResource.CONFIG_KIND;
+
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.config.CapabilityDefinition;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.extensions.restapi.RestApiModule;
 import com.google.gerrit.extensions.webui.JavaScriptPlugin;
 import com.google.gerrit.extensions.webui.WebUiPlugin;
 import com.google.gerrit.server.DynamicOptions.DynamicBean;
 import com.google.gerrit.server.change.ChangePluginDefinedInfoFactory;
 import com.google.gerrit.server.restapi.change.GetChange;
 import com.google.gerrit.server.restapi.change.QueryChanges;
+import com.google.gerrit.sshd.PluginCommandModule;
 import com.google.gerrit.sshd.commands.Query;
 import com.google.inject.Inject;
 import com.googlesource.gerrit.plugins.task.cli.PatchSetArgument;
+import com.googlesource.gerrit.plugins.task.cli.StreamCommand;
 import com.googlesource.gerrit.plugins.task.extensions.PluginProvidedTaskNamesFactory;
+import com.googlesource.gerrit.plugins.task.rest.GetStatuses;
 import java.util.ArrayList;
 import java.util.List;
 import org.kohsuke.args4j.Option;
@@ -51,6 +57,15 @@ public class Modules {
           .to(TaskPluginDefinedInfoFactory.class);
 
       install(new IsTrueOperator.Module());
+      install(new TaskConfigFileCache.Module());
+      install(new SharedPredicateCache.Module());
+      install(new ChangeQueryCache.Module());
+      install(new TaskReferenceCache.Module());
+      install(new TaskAttributeCache.Module());
+      install(new BranchApplicabilityCache.Module());
+      install(new TaskEvaluationExecutor.Module());
+      install(new TaskConfigWarmer.Module());
+      install(new RestModule());
 
       bind(DynamicBean.class).annotatedWith(Exports.named(GetChange.class)).to(MyOptions.class);
       bind(DynamicBean.class).annotatedWith(Exports.named(Query.class)).to(MyOptions.class);
@@ -62,6 +77,20 @@ public class Modules {
     }
   }
 
+  public static class RestModule extends RestApiModule {
+    @Override
+    protected void configure() {
+      get(CONFIG_KIND, "statuses").to(GetStatuses.class);
+    }
+  }
+
+  public static class SshModule extends PluginCommandModule {
+    @Override
+    protected void configureCommands() {
+      command(StreamCommand.class);
+    }
+  }
+
   public static class MyOptions implements DynamicBean {
     @Option(
         name = "--only",
@@ -84,6 +113,18 @@ public class Modules {
     @Option(name = "--include-paths", usage = "Include absolute path to each task")
     public boolean includePaths = false;
 
+    @Option(
+        name = "--summary",
+        usage =
+            "Include only the status of each root task and the number of tasks of each status"
+                + " under it in the output")
+    public boolean summary = false;
+
+    @Option(
+        name = "--expand-failed",
+        usage = "Evaluate and count the subtasks of failed tasks in summaries")
+    public boolean expandFailed = false;
+
     @Option(name = "--evaluation-time", usage = "Include elapsed evaluation time on each task")
     public boolean evaluationTime = false;
 
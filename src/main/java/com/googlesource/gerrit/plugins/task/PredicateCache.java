@@ -14,12 +14,15 @@
 
 package com.googlesource.gerrit.plugins.task;
 
+import static java.util.stream.Collectors.joining;
+
 import com.google.gerrit.index.SchemaFieldDefs.SchemaField;
 import com.google.gerrit.index.query.AndPredicate;
 import com.google.gerrit.index.query.NotPredicate;
 import com.google.gerrit.index.query.OrPredicate;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.index.change.ChangeField;
 import com.google.gerrit.server.query.change.BranchSetIndexPredicate;
@@ -29,29 +32,59 @@ import com.google.gerrit.server.query.change.RegexProjectPredicate;
 import com.google.gerrit.server.query.change.RegexRefPredicate;
 import com.google.gerrit.server.query.change.SubmitRequirementChangeQueryBuilder;
 import com.google.inject.Inject;
+import com.googlesource.gerrit.plugins.task.PredicateCosts.CostOrdered;
 import com.googlesource.gerrit.plugins.task.statistics.HitHashMap;
 import com.googlesource.gerrit.plugins.task.statistics.StopWatch;
 import com.googlesource.gerrit.plugins.task.util.ThrowingProvider;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+/**
+ * Per request cache of parsed task queries.
+ *
+ * <p>Queries which only differ by whitespace share the same parsed predicate, and each query has a
+ * canonical form, in which the operands of ANDs and ORs are sorted, so that queries which only
+ * differ by the order of their operands share the same match results in the MatchCache.
+ */
 public class PredicateCache {
   public static class Statistics {
     protected Object predicatesByQueryCache;
+    protected long sharedCacheHits;
+    protected long sharedCacheMisses;
+    protected long unshareableQueries;
+    protected long normalizedQueryHits;
   }
 
   protected final SubmitRequirementChangeQueryBuilder srcqb;
+  protected final SharedPredicateCache sharedPredicateCache;
   protected final TaskPluginConfiguration config;
   protected final CurrentUser user;
+  protected final TaskMetrics metrics;
+  protected final PredicateCosts predicateCosts;
   protected final HitHashMap<String, ThrowingProvider<Predicate<ChangeData>, QueryParseException>>
       predicatesByQuery = new HitHashMap<>();
 
+  protected final Map<String, String> canonicalByQuery = new HashMap<>();
+  protected final Map<Predicate<ChangeData>, String> canonicalByPredicate =
+      new IdentityHashMap<>();
+
   protected Statistics statistics;
 
   @Inject
   public PredicateCache(
-      TaskPluginConfiguration config, CurrentUser user, SubmitRequirementChangeQueryBuilder srcqb) {
+      TaskPluginConfiguration config,
+      CurrentUser user,
+      SubmitRequirementChangeQueryBuilder srcqb,
+      SharedPredicateCache sharedPredicateCache,
+      TaskMetrics metrics,
+      PredicateCosts predicateCosts) {
     this.config = config;
     this.user = user;
     this.srcqb = srcqb;
+    this.sharedPredicateCache = sharedPredicateCache;
+    this.metrics = metrics;
+    this.predicateCosts = predicateCosts;
   }
 
   public void initStatistics(int summaryCount) {
@@ -66,6 +99,14 @@ public class PredicateCache {
     return statistics;
   }
 
+  /** Get the server wide statistics of ordering predicates, null when they are not ordered. */
+  public PredicateCosts.Statistics getPredicateCostsStatistics() {
+    if (predicateCosts == null || !config.isOrderPredicates()) {
+      return null;
+    }
+    return predicateCosts.getStatistics();
+  }
+
   @SuppressWarnings("try")
   public Predicate<ChangeData> getPredicate(String query, boolean isVisible)
       throws QueryParseException {
@@ -74,17 +115,150 @@ public class PredicateCache {
     if (predProvider != null) {
       return predProvider.get();
     }
-    // never seen 'query' before
+    // never seen 'query' before in this request
     try (StopWatch stopWatch = predicatesByQuery.createLoadingStopWatch(query, isVisible)) {
-      Predicate<ChangeData> pred = srcqb.parse(query);
-      predicatesByQuery.put(query, new ThrowingProvider.Entry<>(pred));
-      return pred;
+      String normalized = normalize(query);
+      if (!normalized.equals(query)) {
+        predProvider = predicatesByQuery.get(normalized);
+        if (predProvider != null && statistics != null) {
+          statistics.normalizedQueryHits++;
+        }
+      }
+      if (predProvider == null) {
+        predProvider = order(getSharedOrParse(normalized));
+        predicatesByQuery.put(normalized, predProvider);
+      }
+      predicatesByQuery.put(query, predProvider);
+    }
+    return predProvider.get();
+  }
+
+  /** Get the canonical form of the predicate of query, to key its match results by. */
+  public String getCanonicalQuery(String query, boolean isVisible) throws QueryParseException {
+    String canonical = canonicalByQuery.get(query);
+    if (canonical == null) {
+      canonical = getCanonical(getPredicate(query, isVisible));
+      canonicalByQuery.put(query, canonical);
+    }
+    return canonical;
+  }
+
+  /**
+   * Get the canonical form of predicate, in which the operands of its ANDs and ORs are sorted, so
+   * that predicates which only differ by the order of their operands have the same form.
+   */
+  public String getCanonical(Predicate<ChangeData> predicate) {
+    String canonical = canonicalByPredicate.get(predicate);
+    if (canonical == null) {
+      canonical = canonicalize(predicate);
+      canonicalByPredicate.put(predicate, canonical);
+    }
+    return canonical;
+  }
+
+  protected String canonicalize(Predicate<ChangeData> predicate) {
+    if (!isCompound(predicate)) {
+      return predicate.toString();
+    }
+    if (predicate.getClass() == NotPredicate.class) {
+      return "-" + getCanonical(predicate.getChild(0));
+    }
+    return predicate.getChildren().stream()
+        .map(this::getCanonical)
+        .sorted()
+        .collect(joining(predicate instanceof AndPredicate ? " AND " : " OR ", "(", ")"));
+  }
+
+  /** Is this an AND, an OR or a NOT, whose operands are matched separately? */
+  public static boolean isCompound(Predicate<ChangeData> predicate) {
+    Class<?> type = predicate.getClass();
+    return predicate instanceof CostOrdered
+        || type == AndPredicate.class
+        || type == OrPredicate.class
+        || type == NotPredicate.class;
+  }
+
+  /** Collapse the whitespace outside of the quoted values of query, which the parser ignores. */
+  protected static String normalize(String query) {
+    String trimmed = query.trim();
+    StringBuilder normalized = new StringBuilder(trimmed.length());
+    char quote = 0;
+    int spaces = 0;
+    boolean isRewritten = trimmed.length() != query.length();
+    for (char c : trimmed.toCharArray()) {
+      if (quote == 0 && Character.isWhitespace(c)) {
+        isRewritten |= spaces++ > 0 || c != ' ';
+        continue;
+      }
+      if (spaces > 0) {
+        normalized.append(' ');
+        spaces = 0;
+      }
+      if (quote == 0 && (c == '"' || c == '{')) {
+        quote = c == '"' ? '"' : '}';
+      } else if (c == quote) {
+        quote = 0;
+      }
+      normalized.append(c);
+    }
+    return isRewritten ? normalized.toString() : query;
+  }
+
+  protected ThrowingProvider<Predicate<ChangeData>, QueryParseException> getSharedOrParse(
+      String query) {
+    if (!sharedPredicateCache.isShareable(query)) {
+      if (statistics != null) {
+        statistics.unshareableQueries++;
+      }
+      return parse(query);
+    }
+    ThrowingProvider<Predicate<ChangeData>, QueryParseException> predProvider =
+        sharedPredicateCache.getIfPresent(query);
+    if (predProvider != null) {
+      if (statistics != null) {
+        statistics.sharedCacheHits++;
+      }
+      return predProvider;
+    }
+    if (statistics != null) {
+      statistics.sharedCacheMisses++;
+    }
+    predProvider = parse(query);
+    sharedPredicateCache.put(query, predProvider);
+    return predProvider;
+  }
+
+  /**
+   * Order the operands of the parsed predicate by cost. This is done per request, on top of the
+   * unordered predicates of the SharedPredicateCache, so that each request uses the costs measured
+   * so far rather than the estimates from when the query was first parsed on this server.
+   */
+  protected ThrowingProvider<Predicate<ChangeData>, QueryParseException> order(
+      ThrowingProvider<Predicate<ChangeData>, QueryParseException> predProvider) {
+    if (predicateCosts == null || !config.isOrderPredicates()) {
+      return predProvider;
+    }
+    try {
+      return new ThrowingProvider.Entry<>(predicateCosts.order(predProvider.get()));
     } catch (QueryParseException e) {
-      predicatesByQuery.put(query, new ThrowingProvider.Thrown<>(e));
-      throw e;
+      return predProvider;
     }
   }
 
+  @SuppressWarnings("try")
+  protected ThrowingProvider<Predicate<ChangeData>, QueryParseException> parse(String query) {
+    try (Timer0.Context ctx = metrics.predicateParseLatency.start()) {
+      return new ThrowingProvider.Entry<>(srcqb.parse(query));
+    } catch (QueryParseException e) {
+      return new ThrowingProvider.Thrown<>(e);
+    }
+  }
+
+  /** Does this query parse to the same predicate for every user? */
+  public boolean isShareable(String query) {
+    return sharedPredicateCache.isShareable(query);
+  }
+
   /**
    * Can this query's output be assumed to be constant given any Change destined for the same
    * Branch.NameKey?
@@ -110,6 +284,14 @@ public class PredicateCache {
       }
       return true;
     }
+    return isBranchPredicate(predicate)
+        || config
+            .getCacheableByBranchPredicateClassNames()
+            .contains(predicate.getClass().getName());
+  }
+
+  /** Does this predicate only match the project or branch of a change? */
+  protected static boolean isBranchPredicate(Predicate<ChangeData> predicate) {
     if (predicate instanceof BranchSetIndexPredicate
         || predicate instanceof RegexProjectPredicate
         || predicate instanceof RegexRefPredicate) {
@@ -117,12 +299,8 @@ public class PredicateCache {
     }
     if (predicate instanceof ChangeIndexPredicate) {
       SchemaField<ChangeData, ?> field = ((ChangeIndexPredicate) predicate).getField();
-      if (field.equals(ChangeField.PROJECT_FIELD) || field.equals(ChangeField.REF_FIELD)) {
-        return true;
-      }
+      return field.equals(ChangeField.PROJECT_FIELD) || field.equals(ChangeField.REF_FIELD);
     }
-    return config
-        .getCacheableByBranchPredicateClassNames()
-        .contains(predicate.getClass().getName());
+    return false;
   }
 }
@@ -0,0 +1,240 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.index.query.AndPredicate;
+import com.google.gerrit.index.query.NotPredicate;
+import com.google.gerrit.index.query.OrPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Orders the operands of parsed task queries so that the cheapest ones are matched first.
+ *
+ * <p>Matching an AND stops at its first operand which does not match (and an OR at its first
+ * operand which matches), so matching the cheap operands first lets them skip the expensive ones.
+ * The cost of an operand is the mean match time measured for its class on this server, sampled
+ * while matching ordered predicates. Until enough samples are measured, project and branch
+ * operands, which only need the change, are assumed to be the cheapest, and the others are
+ * estimated from Predicate.estimateCost(). Operands of equal cost keep the order of the query.
+ *
+ * <p>Predicates are ordered per request (see PredicateCache.order()), so that the orders follow
+ * the costs as they get measured instead of being frozen in the SharedPredicateCache.
+ */
+@Singleton
+public class PredicateCosts {
+  /** Server wide statistics, since the server was started. */
+  public static class Statistics {
+    public long reorderedPredicates;
+    public long matchesDecidedByMovedOperands;
+    public long estimatedEvaluationsAvoided;
+    public Map<String, Long> meanNanosecondsByOperator;
+  }
+
+  /** Matches an operand of an ordered predicate. */
+  @FunctionalInterface
+  public interface OperandMatcher {
+    boolean match(Predicate<ChangeData> operand, ChangeData changeData, boolean isSampled);
+  }
+
+  /** An AND or an OR with ordered operands. */
+  public interface CostOrdered {
+    boolean match(ChangeData changeData, OperandMatcher matcher);
+  }
+
+  /** Only one in this many matches of an ordered predicate times its operands. */
+  protected static final int SAMPLE_EVERY = 16;
+
+  protected static final long MIN_SAMPLES = 32;
+  protected static final long BRANCH_NANOSECONDS = 100;
+  protected static final long DEFAULT_NANOSECONDS = 1000;
+
+  protected static class Cost {
+    protected final LongAdder samples = new LongAdder();
+    protected final LongAdder nanoseconds = new LongAdder();
+
+    protected long getMean() {
+      long count = samples.sum();
+      return count == 0 ? 0 : nanoseconds.sum() / count;
+    }
+  }
+
+  protected final Map<Class<?>, Cost> costByOperator = new ConcurrentHashMap<>();
+  protected final LongAdder reorderedPredicates = new LongAdder();
+  protected final LongAdder matchesDecidedByMovedOperands = new LongAdder();
+  protected final LongAdder estimatedEvaluationsAvoided = new LongAdder();
+
+  /** Get an equivalent predicate with the operands of its ANDs and ORs ordered by cost. */
+  public Predicate<ChangeData> order(Predicate<ChangeData> predicate) {
+    Class<?> type = predicate.getClass();
+    if (type == NotPredicate.class) {
+      Predicate<ChangeData> child = predicate.getChild(0);
+      Predicate<ChangeData> ordered = order(child);
+      return ordered == child ? predicate : Predicate.not(ordered);
+    }
+    if (type != AndPredicate.class && type != OrPredicate.class) {
+      return predicate;
+    }
+
+    List<Predicate<ChangeData>> children = new ArrayList<>(predicate.getChildCount());
+    for (Predicate<ChangeData> child : predicate.getChildren()) {
+      children.add(order(child));
+    }
+    long[] costs = children.stream().mapToLong(this::estimate).toArray();
+    // Stable, so operands of equal cost keep their order
+    int[] positions =
+        IntStream.range(0, children.size())
+            .boxed()
+            .sorted(Comparator.comparingLong(i -> costs[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    // The number of operands each operand was moved ahead of, which matching it skips
+    int[] movedAhead = new int[positions.length];
+    boolean isReordered = false;
+    for (int i = 0; i < positions.length; i++) {
+      for (int j = i + 1; j < positions.length; j++) {
+        if (positions[j] < positions[i]) {
+          movedAhead[i]++;
+        }
+      }
+      isReordered |= movedAhead[i] > 0;
+    }
+    if (isReordered) {
+      reorderedPredicates.increment();
+    }
+    List<Predicate<ChangeData>> ordered =
+        IntStream.of(positions).mapToObj(children::get).collect(Collectors.toList());
+    return type == AndPredicate.class
+        ? new CostOrderedAnd(ordered, movedAhead)
+        : new CostOrderedOr(ordered, movedAhead);
+  }
+
+  protected long estimate(Predicate<ChangeData> predicate) {
+    if (predicate instanceof CostOrdered || predicate.getClass() == NotPredicate.class) {
+      return predicate.getChildren().stream().mapToLong(this::estimate).sum();
+    }
+    Cost cost = costByOperator.get(predicate.getClass());
+    if (cost != null && cost.samples.sum() >= MIN_SAMPLES) {
+      return cost.getMean();
+    }
+    if (PredicateCache.isBranchPredicate(predicate)) {
+      return BRANCH_NANOSECONDS;
+    }
+    return DEFAULT_NANOSECONDS * Math.max(1, predicate.estimateCost());
+  }
+
+  /**
+   * Match the operands of predicate in order until the match of one of them is decisive.
+   *
+   * @return the index of the deciding operand, or -1 if none did.
+   */
+  protected int matchUntil(
+      Predicate<ChangeData> predicate,
+      ChangeData changeData,
+      boolean decisive,
+      int[] movedAhead,
+      boolean isSampled,
+      OperandMatcher matcher) {
+    List<Predicate<ChangeData>> children = predicate.getChildren();
+    for (int i = 0; i < children.size(); i++) {
+      if (matcher.match(children.get(i), changeData, isSampled) == decisive) {
+        if (i < movedAhead.length && movedAhead[i] > 0) {
+          matchesDecidedByMovedOperands.increment();
+          estimatedEvaluationsAvoided.add(movedAhead[i]);
+        }
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Match an operand, timing it when sampled unless it is an ordered predicate itself. */
+  public boolean matchOperand(
+      Predicate<ChangeData> operand, ChangeData changeData, boolean isSampled) {
+    if (!isSampled || operand instanceof CostOrdered) {
+      return operand.asMatchable().match(changeData);
+    }
+    long start = System.nanoTime();
+    boolean isMatch = operand.asMatchable().match(changeData);
+    Cost cost = costByOperator.computeIfAbsent(operand.getClass(), c -> new Cost());
+    cost.samples.increment();
+    cost.nanoseconds.add(System.nanoTime() - start);
+    return isMatch;
+  }
+
+  public Statistics getStatistics() {
+    Statistics statistics = new Statistics();
+    statistics.reorderedPredicates = reorderedPredicates.sum();
+    statistics.matchesDecidedByMovedOperands = matchesDecidedByMovedOperands.sum();
+    statistics.estimatedEvaluationsAvoided = estimatedEvaluationsAvoided.sum();
+    statistics.meanNanosecondsByOperator = new TreeMap<>();
+    costByOperator.forEach(
+        (type, cost) -> statistics.meanNanosecondsByOperator.put(type.getName(), cost.getMean()));
+    return statistics;
+  }
+
+  protected class CostOrderedAnd extends AndPredicate<ChangeData> implements CostOrdered {
+    protected final int[] movedAhead;
+    protected int matches;
+
+    protected CostOrderedAnd(List<Predicate<ChangeData>> children, int[] movedAhead) {
+      super(children);
+      this.movedAhead = movedAhead;
+    }
+
+    @Override
+    public boolean match(ChangeData changeData) {
+      return match(changeData, PredicateCosts.this::matchOperand);
+    }
+
+    @Override
+    public boolean match(ChangeData changeData, OperandMatcher matcher) {
+      boolean isSampled = ++matches % SAMPLE_EVERY == 0; // racy, but only used for sampling
+      return matchUntil(this, changeData, false, movedAhead, isSampled, matcher) < 0;
+    }
+  }
+
+  protected class CostOrderedOr extends OrPredicate<ChangeData> implements CostOrdered {
+    protected final int[] movedAhead;
+    protected int matches;
+
+    protected CostOrderedOr(List<Predicate<ChangeData>> children, int[] movedAhead) {
+      super(children);
+      this.movedAhead = movedAhead;
+    }
+
+    @Override
+    public boolean match(ChangeData changeData) {
+      return match(changeData, PredicateCosts.this::matchOperand);
+    }
+
+    @Override
+    public boolean match(ChangeData changeData, OperandMatcher matcher) {
+      boolean isSampled = ++matches % SAMPLE_EVERY == 0; // racy, but only used for sampling
+      return matchUntil(this, changeData, true, movedAhead, isSampled, matcher) >= 0;
+    }
+  }
+}
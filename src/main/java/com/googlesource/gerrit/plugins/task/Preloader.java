@@ -20,7 +20,6 @@ import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
 import com.googlesource.gerrit.plugins.task.statistics.HitHashMap;
 import com.googlesource.gerrit.plugins.task.statistics.StatisticsMap;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -145,21 +144,32 @@ public class Preloader {
     return Optional.empty();
   }
 
+  /**
+   * Create a copy of definition with the values of preloadFrom filled in. Values set on definition
+   * win, Lists are extended with (and Maps overlaid on) the values of preloadFrom.
+   *
+   * <p>Every field of TaskBase must be merged here.
+   */
   protected static Task preloadFrom(Task definition, Task preloadFrom) {
-    Task preloadTo = definition.config.new Task(definition.subSection);
-    for (Field field : definition.getClass().getFields()) {
-      String name = field.getName();
-      if ("config".equals(name)) {
-        continue;
-      }
-
-      try {
-        field.setAccessible(true);
-        preloadField(field, definition, preloadFrom, preloadTo);
-      } catch (IllegalAccessException | IllegalArgumentException e) {
-        throw new RuntimeException();
-      }
-    }
+    Task preloadTo = definition.config.new Task(definition.subSection, definition.key);
+    preloadTo.applicable = preloadValueFrom(definition.applicable, preloadFrom.applicable);
+    preloadTo.duplicateKey = preloadValueFrom(definition.duplicateKey, preloadFrom.duplicateKey);
+    preloadTo.exported = preloadMapFrom(definition.exported, preloadFrom.exported);
+    preloadTo.fail = preloadValueFrom(definition.fail, preloadFrom.fail);
+    preloadTo.failHint = preloadValueFrom(definition.failHint, preloadFrom.failHint);
+    preloadTo.inProgress = preloadValueFrom(definition.inProgress, preloadFrom.inProgress);
+    preloadTo.pass = preloadValueFrom(definition.pass, preloadFrom.pass);
+    preloadTo.preloadTask = preloadValueFrom(definition.preloadTask, preloadFrom.preloadTask);
+    preloadTo.properties = preloadMapFrom(definition.properties, preloadFrom.properties);
+    preloadTo.readyHint = preloadValueFrom(definition.readyHint, preloadFrom.readyHint);
+    preloadTo.subTasks = preloadListFrom(definition.subTasks, preloadFrom.subTasks);
+    preloadTo.subTasksExternals =
+        preloadListFrom(definition.subTasksExternals, preloadFrom.subTasksExternals);
+    preloadTo.subTasksFactories =
+        preloadListFrom(definition.subTasksFactories, preloadFrom.subTasksFactories);
+    preloadTo.subTasksFiles = preloadListFrom(definition.subTasksFiles, preloadFrom.subTasksFiles);
+    preloadTo.isVisible = definition.isVisible;
+    preloadTo.isMasqueraded = definition.isMasqueraded;
     return preloadTo;
   }
 
@@ -167,45 +177,15 @@ public class Preloader {
     return taskConfigCache.getTaskConfig(key.subSection().file()).getOptionalTask(key.task());
   }
 
-  protected static <S, K, V> void preloadField(
-      Field field, Task definition, Task preloadFrom, Task preloadTo)
-      throws IllegalArgumentException, IllegalAccessException {
-    Object pre = field.get(preloadFrom);
-    Object val = field.get(definition);
-    if (val == null) {
-      field.set(preloadTo, pre);
-    } else if (pre == null) {
-      field.set(preloadTo, val);
-    } else if (val instanceof List) {
-      List<?> valList = List.class.cast(val);
-      List<?> preList = List.class.cast(pre);
-      field.set(preloadTo, preloadListFrom(castUnchecked(valList), castUnchecked(preList)));
-    } else if (val instanceof Map) {
-      Map<?, ?> valMap = Map.class.cast(val);
-      Map<?, ?> preMap = Map.class.cast(pre);
-      field.set(preloadTo, preloadMapFrom(castUnchecked(valMap), castUnchecked(preMap)));
-    } else {
-      field.set(preloadTo, val);
-    }
-  }
-
-  @SuppressWarnings("unchecked")
-  protected static <S> List<S> castUnchecked(List<?> list) {
-    List<S> forceCheck = (List<S>) list;
-    return forceCheck;
-  }
-
-  @SuppressWarnings("unchecked")
-  protected static <K, V> Map<K, V> castUnchecked(Map<?, ?> map) {
-    Map<K, V> forceCheck = (Map<K, V>) map;
-    return forceCheck;
+  protected static <T> T preloadValueFrom(T val, T pre) {
+    return val == null ? pre : val;
   }
 
   protected static <T> List<T> preloadListFrom(List<T> list, List<T> preList) {
-    if (preList.isEmpty()) {
-      return list;
+    if (preList == null || preList.isEmpty()) {
+      return list == null ? preList : list;
     }
-    if (list.isEmpty()) {
+    if (list == null || list.isEmpty()) {
       return preList;
     }
 
@@ -216,10 +196,10 @@ public class Preloader {
   }
 
   protected static <K, V> Map<K, V> preloadMapFrom(Map<K, V> map, Map<K, V> preMap) {
-    if (preMap.isEmpty()) {
-      return map;
+    if (preMap == null || preMap.isEmpty()) {
+      return map == null ? preMap : map;
     }
-    if (map.isEmpty()) {
+    if (map == null || map.isEmpty()) {
       return preMap;
     }
 
@@ -0,0 +1,216 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import com.googlesource.gerrit.plugins.task.util.ThrowingProvider;
+import java.util.Locale;
+
+/**
+ * A server wide cache of parsed task queries.
+ *
+ * <p>Only queries which parse to the same predicates for every user may be shared. Since many
+ * operators depend on the calling user, some in non obvious ways (such as 'is:author', 'query:'
+ * and 'destination:', which look up the user's email, named queries and saved destinations), a
+ * query is only shareable when all of its operators are known to be user independent. All other
+ * queries must only be cached per request.
+ */
+@Singleton
+public class SharedPredicateCache {
+  protected static final String PREDICATE_BY_QUERY = "task_predicates";
+
+  /** Operators whose predicates only depend on the change and on their value. */
+  protected static final ImmutableSet<String> USER_INDEPENDENT_OPERATORS =
+      ImmutableSet.of(
+          "branch",
+          "change",
+          "commit",
+          "dir",
+          "directory",
+          "ext",
+          "extension",
+          "file",
+          "hashtag",
+          "inhashtag",
+          "intopic",
+          "label",
+          "message",
+          "path",
+          "project",
+          "projects",
+          "ref",
+          "status",
+          "topic");
+
+  /** The values of the 'is:' operator which only depend on the change. */
+  protected static final ImmutableSet<String> USER_INDEPENDENT_IS_VALUES =
+      ImmutableSet.of(
+          "abandoned",
+          "closed",
+          "merged",
+          "new",
+          "open",
+          "pending",
+          "private",
+          "pure-revert",
+          "reviewed",
+          "wip");
+
+  /**
+   * The arguments of the 'label:' operator which only depend on the change, any other argument,
+   * such as 'user=', 'group=' or a bare account or group name, is resolved with the calling user.
+   */
+  protected static final ImmutableSet<String> USER_INDEPENDENT_LABEL_ARGUMENTS =
+      ImmutableSet.of("owner", "non_uploader", "non_contributor");
+
+  protected static final ImmutableSet<String> KEYWORDS = ImmutableSet.of("and", "or", "not");
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(
+              PREDICATE_BY_QUERY,
+              String.class,
+              new TypeLiteral<ThrowingProvider<Predicate<ChangeData>, QueryParseException>>() {})
+          .maximumWeight(256 * 1024)
+          .weigher(QueryWeigher.class);
+    }
+  }
+
+  /** Weigh entries by the length of their query as a rough proxy of the parsed predicate size. */
+  public static class QueryWeigher
+      implements Weigher<String, ThrowingProvider<Predicate<ChangeData>, QueryParseException>> {
+    @Override
+    public int weigh(
+        String query, ThrowingProvider<Predicate<ChangeData>, QueryParseException> predicate) {
+      return query.length();
+    }
+  }
+
+  protected final Cache<String, ThrowingProvider<Predicate<ChangeData>, QueryParseException>>
+      predicatesByQuery;
+
+  @Inject
+  public SharedPredicateCache(
+      @Named(PREDICATE_BY_QUERY)
+          Cache<String, ThrowingProvider<Predicate<ChangeData>, QueryParseException>>
+              predicatesByQuery) {
+    this.predicatesByQuery = predicatesByQuery;
+  }
+
+  public boolean isShareable(String query) {
+    return isUserIndependent(query);
+  }
+
+  /**
+   * Are all the terms of query operators known to parse to the same predicates for every user?
+   *
+   * <p>Bare terms are not, since the default field may search for accounts, and neither are label
+   * terms with arguments about users or groups, which are resolved with the calling user.
+   */
+  protected static boolean isUserIndependent(String query) {
+    int end;
+    for (int start = 0; start < query.length(); start = end) {
+      char c = query.charAt(start);
+      if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '-' || c == '!') {
+        end = start + 1;
+        continue;
+      }
+      end = getTermEnd(query, start);
+      if (!isUserIndependentTerm(query.substring(start, end).toLowerCase(Locale.US))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  protected static boolean isUserIndependentTerm(String term) {
+    if (KEYWORDS.contains(term)) {
+      return true;
+    }
+    int colon = term.indexOf(':');
+    if (colon < 0) {
+      return false;
+    }
+    String operator = term.substring(0, colon);
+    String value = unquote(term.substring(colon + 1));
+    switch (operator) {
+      case "is":
+        return USER_INDEPENDENT_IS_VALUES.contains(value);
+      case "label":
+        return isUserIndependentLabel(value);
+      default:
+        return USER_INDEPENDENT_OPERATORS.contains(operator);
+    }
+  }
+
+  protected static boolean isUserIndependentLabel(String value) {
+    String[] arguments = value.split(",", -1);
+    for (int i = 1; i < arguments.length; i++) {
+      if (!USER_INDEPENDENT_LABEL_ARGUMENTS.contains(arguments[i])
+          && !arguments[i].startsWith("count")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Get the end of the term starting at start, which may contain quoted values. */
+  protected static int getTermEnd(String query, int start) {
+    char quote = 0;
+    int i = start;
+    for (; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '{') {
+        quote = c == '"' ? '"' : '}';
+      } else if (Character.isWhitespace(c) || c == '(' || c == ')') {
+        break;
+      }
+    }
+    return i;
+  }
+
+  protected static String unquote(String value) {
+    if (value.length() >= 2
+        && ((value.startsWith("\"") && value.endsWith("\""))
+            || (value.startsWith("{") && value.endsWith("}")))) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  public ThrowingProvider<Predicate<ChangeData>, QueryParseException> getIfPresent(String query) {
+    return predicatesByQuery.getIfPresent(query);
+  }
+
+  public void put(
+      String query, ThrowingProvider<Predicate<ChangeData>, QueryParseException> predicate) {
+    predicatesByQuery.put(query, predicate);
+  }
+}
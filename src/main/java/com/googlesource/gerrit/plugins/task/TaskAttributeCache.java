@@ -0,0 +1,142 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskAttribute;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskPluginAttribute;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A server wide cache of the evaluated tasks of changes.
+ *
+ * <p>Entries are keyed by the meta revision of the change, which every vote, new patch set or
+ * status change advances, by the calling user and by the output options. Each entry also records
+ * the revisions of the config branches its evaluation may have read, and it is only served while
+ * all of those branches are still at the same revisions.
+ *
+ * <p>Queries may depend on state outside of the change and its task configs (such as group
+ * membership or the state of the target branch), which is why entries expire quickly.
+ *
+ * <p>The attributes of entries are shared by all the requests they are served to, so they must
+ * never be modified.
+ */
+@Singleton
+public class TaskAttributeCache {
+  protected static final String ATTRIBUTE_BY_CHANGE = "task_attributes";
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(ATTRIBUTE_BY_CHANGE, Key.class, Entry.class)
+          .maximumWeight(64 * 1024)
+          .expireAfterWrite(Duration.ofMinutes(1))
+          .weigher(TasksWeigher.class);
+    }
+  }
+
+  /** Weigh entries by their number of tasks, since each entry holds a whole tree of tasks. */
+  public static class TasksWeigher implements Weigher<Key, Entry> {
+    @Override
+    public int weigh(Key key, Entry entry) {
+      return 1 + (entry.attribute == null ? 0 : countTasks(entry.attribute.roots));
+    }
+
+    protected static int countTasks(List<TaskAttribute> tasks) {
+      int count = 0;
+      if (tasks != null) {
+        for (TaskAttribute task : tasks) {
+          count += 1 + countTasks(task.subTasks);
+        }
+      }
+      return count;
+    }
+  }
+
+  @AutoValue
+  public abstract static class Key {
+    public static Key create(Change.Id change, ObjectId metaRevision, Object user, String options) {
+      return new AutoValue_TaskAttributeCache_Key(change, metaRevision.copy(), user, options);
+    }
+
+    public abstract Change.Id change();
+
+    public abstract ObjectId metaRevision();
+
+    public abstract Object user();
+
+    public abstract String options();
+  }
+
+  public static class Entry {
+    /** Null when no tasks were output for the change. */
+    public final TaskPluginAttribute attribute;
+
+    protected final ImmutableMap<BranchNameKey, ObjectId> revisionByConfigBranch;
+
+    protected Entry(
+        TaskPluginAttribute attribute, Map<BranchNameKey, ObjectId> revisionByConfigBranch) {
+      this.attribute = attribute;
+      this.revisionByConfigBranch = ImmutableMap.copyOf(revisionByConfigBranch);
+    }
+  }
+
+  protected final TaskConfigFileCache taskConfigFileCache;
+  protected final Cache<Key, Entry> entryByKey;
+
+  @Inject
+  public TaskAttributeCache(
+      TaskConfigFileCache taskConfigFileCache,
+      @Named(ATTRIBUTE_BY_CHANGE) Cache<Key, Entry> entryByKey) {
+    this.taskConfigFileCache = taskConfigFileCache;
+    this.entryByKey = entryByKey;
+  }
+
+  /** Get the entry for key, or null if there is none or its config branches have been updated. */
+  public Entry get(Key key) {
+    Entry entry = entryByKey.getIfPresent(key);
+    if (entry != null) {
+      try {
+        for (Map.Entry<BranchNameKey, ObjectId> e : entry.revisionByConfigBranch.entrySet()) {
+          if (!taskConfigFileCache.getRevision(e.getKey()).equals(e.getValue())) {
+            entryByKey.invalidate(key);
+            return null;
+          }
+        }
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return entry;
+  }
+
+  public void put(
+      Key key, TaskPluginAttribute attribute, Map<BranchNameKey, ObjectId> revisionByConfigBranch) {
+    entryByKey.put(key, new Entry(attribute, revisionByConfigBranch));
+  }
+}
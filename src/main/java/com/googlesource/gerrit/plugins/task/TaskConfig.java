@@ -17,7 +17,7 @@ package com.googlesource.gerrit.plugins.task;
 import com.google.gerrit.common.Container;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.server.git.meta.VersionedConfigFile;
-import com.googlesource.gerrit.plugins.task.util.Copier;
+import com.googlesource.gerrit.plugins.task.properties.Template;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -25,9 +25,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 
 /** Task Configuration file living in git */
 public class TaskConfig extends VersionedConfigFile {
@@ -44,6 +48,11 @@ public class TaskConfig extends VersionedConfigFile {
     }
   }
 
+  /**
+   * Like the reflective Container, SubSections of the same class are equal when the fields declared
+   * by their class are equal (and they come from the same config and subsection), but the fields
+   * are compared explicitly since SubSections are looked up in hot paths.
+   */
   protected class SubSection extends Container {
     public TaskConfig config;
     public final SubSectionKey subSection;
@@ -52,6 +61,34 @@ public class TaskConfig extends VersionedConfigFile {
       this.config = TaskConfig.this;
       this.subSection = s;
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SubSection other = (SubSection) o;
+      return config == other.config
+          && subSection.equals(other.subSection)
+          && isEqualDeclared(other);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * subSection.hashCode() + hashCodeDeclared();
+    }
+
+    /** Compare the fields declared by the class of this, which is also the class of o. */
+    protected boolean isEqualDeclared(SubSection o) {
+      return true;
+    }
+
+    protected int hashCodeDeclared() {
+      return 0;
+    }
   }
 
   public class TaskBase extends SubSection {
@@ -107,7 +144,22 @@ public class TaskConfig extends VersionedConfigFile {
 
     protected TaskBase(TaskBase base) {
       this(base.subSection);
-      Copier.shallowCopyDeclaredFields(TaskBase.class, base, this, false);
+      applicable = base.applicable;
+      duplicateKey = base.duplicateKey;
+      exported = base.exported;
+      fail = base.fail;
+      failHint = base.failHint;
+      inProgress = base.inProgress;
+      pass = base.pass;
+      preloadTask = base.preloadTask;
+      properties = base.properties;
+      readyHint = base.readyHint;
+      subTasks = base.subTasks;
+      subTasksExternals = base.subTasksExternals;
+      subTasksFactories = base.subTasksFactories;
+      subTasksFiles = base.subTasksFiles;
+      isVisible = base.isVisible;
+      isMasqueraded = base.isMasqueraded;
     }
 
     protected TaskBase(SubSectionKey s) {
@@ -115,7 +167,7 @@ public class TaskConfig extends VersionedConfigFile {
     }
   }
 
-  public class Task extends TaskBase implements Cloneable {
+  public class Task extends TaskBase {
     public final TaskKey key;
 
     public Task(SubSectionKey s, boolean isVisible, boolean isMasqueraded) {
@@ -133,6 +185,16 @@ public class TaskConfig extends VersionedConfigFile {
       key = TaskKey.create(s);
     }
 
+    protected Task(SubSectionKey s, TaskKey key) {
+      super(s);
+      this.key = key;
+    }
+
+    public Task(Task task) {
+      super(task);
+      key = task.key;
+    }
+
     protected Map<String, String> getAllProperties() {
       Map<String, String> all = new HashMap<>(properties);
       all.putAll(exported);
@@ -150,6 +212,16 @@ public class TaskConfig extends VersionedConfigFile {
     public TaskKey key() {
       return key;
     }
+
+    @Override
+    protected boolean isEqualDeclared(SubSection o) {
+      return key.equals(((Task) o).key);
+    }
+
+    @Override
+    protected int hashCodeDeclared() {
+      return key.hashCode();
+    }
   }
 
   public class TasksFactory extends TaskBase {
@@ -159,9 +231,19 @@ public class TaskConfig extends VersionedConfigFile {
       super(s, isVisible, isMasqueraded);
       namesFactory = getString(s, KEY_NAMES_FACTORY, null);
     }
+
+    @Override
+    protected boolean isEqualDeclared(SubSection o) {
+      return Objects.equals(namesFactory, ((TasksFactory) o).namesFactory);
+    }
+
+    @Override
+    protected int hashCodeDeclared() {
+      return Objects.hashCode(namesFactory);
+    }
   }
 
-  public class NamesFactory extends SubSection implements Cloneable {
+  public class NamesFactory extends SubSection {
     public String changes;
     public List<String> names;
     public String type;
@@ -179,6 +261,32 @@ public class TaskConfig extends VersionedConfigFile {
       provider = getString(s, KEY_PROVIDER);
       args = getStringList(s, KEY_ARG);
     }
+
+    public NamesFactory(NamesFactory namesFactory) {
+      super(namesFactory.subSection);
+      changes = namesFactory.changes;
+      names = namesFactory.names;
+      type = namesFactory.type;
+      plugin = namesFactory.plugin;
+      provider = namesFactory.provider;
+      args = namesFactory.args;
+    }
+
+    @Override
+    protected boolean isEqualDeclared(SubSection o) {
+      NamesFactory other = (NamesFactory) o;
+      return Objects.equals(changes, other.changes)
+          && Objects.equals(names, other.names)
+          && Objects.equals(type, other.type)
+          && Objects.equals(plugin, other.plugin)
+          && Objects.equals(provider, other.provider)
+          && Objects.equals(args, other.args);
+    }
+
+    @Override
+    protected int hashCodeDeclared() {
+      return Objects.hash(changes, names, type, plugin, provider, args);
+    }
   }
 
   public class External extends SubSection {
@@ -192,6 +300,19 @@ public class TaskConfig extends VersionedConfigFile {
       file = getString(s, KEY_FILE, null);
       user = getString(s, KEY_USER, null);
     }
+
+    @Override
+    protected boolean isEqualDeclared(SubSection o) {
+      External other = (External) o;
+      return Objects.equals(name, other.name)
+          && Objects.equals(file, other.file)
+          && Objects.equals(user, other.user);
+    }
+
+    @Override
+    protected int hashCodeDeclared() {
+      return Objects.hash(name, file, user);
+    }
   }
 
   public static final String SEP = "\0";
@@ -226,6 +347,8 @@ public class TaskConfig extends VersionedConfigFile {
   public static final String KEY_USER = "user";
 
   protected final FileKey file;
+  protected final Map<String, Template> templateByText = new ConcurrentHashMap<>();
+  protected ObjectId branchRevision;
   public boolean isVisible;
   public boolean isMasqueraded;
 
@@ -241,6 +364,21 @@ public class TaskConfig extends VersionedConfigFile {
     this.isMasqueraded = isMasqueraded;
   }
 
+  /** Use an already parsed (and possibly shared) Config instead of reading the file from git. */
+  public void loadFrom(Config cfg) {
+    this.cfg = cfg;
+  }
+
+  /** The revision of the branch this file was read from, the zero id if the branch is missing. */
+  public ObjectId getBranchRevision() {
+    return branchRevision;
+  }
+
+  /** Get the compiled Template of a text from this file, compiling it only on first use. */
+  public Template getTemplate(String text) {
+    return templateByText.computeIfAbsent(text, Template::compile);
+  }
+
   protected List<Task> getTasks(String type) {
     List<Task> tasks = new ArrayList<>();
     // No need to get a task with no name (what would we call it?)
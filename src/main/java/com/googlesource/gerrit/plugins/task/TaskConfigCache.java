@@ -14,10 +14,13 @@
 
 package com.googlesource.gerrit.plugins.task;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.config.AllProjectsName;
 import com.google.gerrit.server.config.AllProjectsNameProvider;
@@ -27,37 +30,66 @@ import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.permissions.RefPermission;
 import com.google.inject.Inject;
 import com.googlesource.gerrit.plugins.task.cli.PatchSetArgument;
+import com.googlesource.gerrit.plugins.task.statistics.ConcurrentHitHashMap;
+import com.googlesource.gerrit.plugins.task.statistics.StatisticsMap;
+import com.googlesource.gerrit.plugins.task.statistics.StopWatch;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jgit.errors.ConfigInvalidException;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.ObjectId;
 
+/**
+ * Per request cache of TaskConfigs. It is shared by all the TaskTrees evaluating changes for a
+ * request, which may run concurrently, so its maps are concurrent.
+ *
+ * <p>TaskConfigs are cached as futures, so that no lock is held while a config is read and parsed.
+ * The first thread missing a config loads it, and the other threads wanting the same config wait
+ * for that load only, while the loads of other configs proceed.
+ */
 public class TaskConfigCache {
   private static final FluentLogger log = FluentLogger.forEnclosingClass();
 
+  public static class Statistics {
+    public Object taskConfigByFileCache;
+    public long sharedCacheHits;
+    public long sharedCacheMisses;
+  }
+
   protected final GitRepositoryManager gitMgr;
+  protected final TaskConfigFileCache taskConfigFileCache;
   protected final PermissionBackend permissionBackend;
 
   protected final CurrentUser user;
   protected final AllProjectsName allProjects;
   protected final TaskPluginConfiguration config;
+  protected final TaskMetrics metrics;
+
+  protected final Map<BranchNameKey, PatchSetArgument> psaMasquerades = new ConcurrentHashMap<>();
+  protected final StatisticsMap<FileKey, CompletableFuture<TaskConfig>> taskCfgByFile =
+      new ConcurrentHitHashMap<>();
+  protected final Map<BranchNameKey, ObjectId> revisionByLoadedBranch = new ConcurrentHashMap<>();
 
-  protected final Map<BranchNameKey, PatchSetArgument> psaMasquerades = new HashMap<>();
-  protected final Map<FileKey, TaskConfig> taskCfgByFile = new HashMap<>();
+  protected Statistics statistics;
 
   @Inject
   protected TaskConfigCache(
       AllProjectsNameProvider allProjectsNameProvider,
       GitRepositoryManager gitMgr,
+      TaskConfigFileCache taskConfigFileCache,
       PermissionBackend permissionBackend,
       CurrentUser user,
-      TaskPluginConfiguration config) {
+      TaskPluginConfiguration config,
+      TaskMetrics metrics) {
     this.allProjects = allProjectsNameProvider.get();
     this.gitMgr = gitMgr;
+    this.taskConfigFileCache = taskConfigFileCache;
     this.permissionBackend = permissionBackend;
     this.user = user;
     this.config = config;
+    this.metrics = metrics;
   }
 
   public TaskConfig getRootConfig() throws ConfigInvalidException, IOException {
@@ -68,16 +100,48 @@ public class TaskConfigCache {
     psaMasquerades.put(psa.change.getDest(), psa);
   }
 
+  public boolean isMasquerading() {
+    return !psaMasquerades.isEmpty();
+  }
+
+  /** Get the revisions of all the (not masqueraded) branches task configs were loaded from. */
+  public ImmutableMap<BranchNameKey, ObjectId> getLoadedRevisions() {
+    return ImmutableMap.copyOf(revisionByLoadedBranch);
+  }
+
   public TaskConfig getTaskConfig(FileKey key) throws ConfigInvalidException, IOException {
-    TaskConfig cfg = taskCfgByFile.get(key);
+    CompletableFuture<TaskConfig> cfg = taskCfgByFile.get(key);
     if (cfg == null) {
-      cfg = loadTaskConfig(key);
-      taskCfgByFile.put(key, cfg);
+      CompletableFuture<TaskConfig> loading = new CompletableFuture<>();
+      cfg = taskCfgByFile.putIfAbsent(key, loading);
+      if (cfg == null) {
+        cfg = loading;
+        load(key, loading);
+      }
+    }
+    try {
+      return cfg.join();
+    } catch (CompletionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), ConfigInvalidException.class);
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
     }
-    return cfg;
   }
 
-  private TaskConfig loadTaskConfig(FileKey file) throws ConfigInvalidException, IOException {
+  @SuppressWarnings("try")
+  protected void load(FileKey key, CompletableFuture<TaskConfig> loading) {
+    try (StopWatch stopWatch = taskCfgByFile.createLoadingStopWatch(key, true)) {
+      loading.complete(loadTaskConfig(key));
+    } catch (ConfigInvalidException | IOException | RuntimeException e) {
+      // Not cached, so that the next request for the config tries to load it again
+      taskCfgByFile.remove(key, loading);
+      loading.completeExceptionally(e);
+    }
+  }
+
+  @SuppressWarnings("try")
+  protected TaskConfig loadTaskConfig(FileKey file) throws ConfigInvalidException, IOException {
     BranchNameKey branch = file.branch();
     PatchSetArgument psa = psaMasquerades.get(branch);
     boolean visible = true; // invisible psas are filtered out by commandline
@@ -94,8 +158,19 @@ public class TaskConfigCache {
         isMasqueraded
             ? new TaskConfig(branch, file, visible, isMasqueraded)
             : new TaskConfig(file, visible, isMasqueraded);
-    try (Repository git = gitMgr.openRepository(project)) {
-      cfg.load(project, git);
+    try (Timer1.Context<String> ctx =
+        metrics.configLoadLatency.start(TaskMetrics.getFileName(file))) {
+      boolean isCached = taskConfigFileCache.load(cfg, branch);
+      if (!isMasqueraded) {
+        revisionByLoadedBranch.put(branch, cfg.getBranchRevision());
+      }
+      if (statistics != null) {
+        if (isCached) {
+          statistics.sharedCacheHits++;
+        } else {
+          statistics.sharedCacheMisses++;
+        }
+      }
     } catch (IOException e) {
       log.atWarning().withCause(e).log("Failed to load %s for %s", file.file(), project);
       throw e;
@@ -105,6 +180,18 @@ public class TaskConfigCache {
     return cfg;
   }
 
+  public void initStatistics(int summaryCount) {
+    statistics = new Statistics();
+    taskCfgByFile.initStatistics(summaryCount);
+  }
+
+  public Object getStatistics() {
+    if (statistics != null) {
+      statistics.taskConfigByFileCache = taskCfgByFile.getStatistics();
+    }
+    return statistics;
+  }
+
   public boolean isVisible(BranchNameKey branch) {
     try {
       PermissionBackend.ForProject permissions =
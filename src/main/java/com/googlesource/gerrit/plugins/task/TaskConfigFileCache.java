@@ -0,0 +1,119 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.common.cache.Cache;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * A server wide cache of parsed task config files.
+ *
+ * <p>Parsed files are cached by the revision they were read from, which makes those entries
+ * immutable. The revision of each branch is cached separately and invalidated whenever the branch
+ * is updated, so that a cached file is only ever served for the current revision of its branch.
+ *
+ * <p>Only the parsed file contents are shared, the TaskConfig wrapping them is still created for
+ * every request since its visibility depends on the calling user.
+ */
+@Singleton
+public class TaskConfigFileCache implements GitReferenceUpdatedListener {
+  protected static final String REVISION_BY_BRANCH = "task_config_revisions";
+  protected static final String CONFIG_BY_REVISION = "task_configs";
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(REVISION_BY_BRANCH, BranchNameKey.class, ObjectId.class);
+      cache(CONFIG_BY_REVISION, FileRevisionKey.class, Config.class);
+      DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(TaskConfigFileCache.class);
+    }
+  }
+
+  protected final GitRepositoryManager gitMgr;
+  protected final Cache<BranchNameKey, ObjectId> revisionByBranch;
+  protected final Cache<FileRevisionKey, Config> configByRevision;
+
+  @Inject
+  public TaskConfigFileCache(
+      GitRepositoryManager gitMgr,
+      @Named(REVISION_BY_BRANCH) Cache<BranchNameKey, ObjectId> revisionByBranch,
+      @Named(CONFIG_BY_REVISION) Cache<FileRevisionKey, Config> configByRevision) {
+    this.gitMgr = gitMgr;
+    this.revisionByBranch = revisionByBranch;
+    this.configByRevision = configByRevision;
+  }
+
+  /**
+   * Load the file of the TaskConfig from the current revision of branch.
+   *
+   * @return true if the file was served from the cache, false if it had to be read from git.
+   */
+  public boolean load(TaskConfig cfg, BranchNameKey branch)
+      throws ConfigInvalidException, IOException {
+    ObjectId revision = getRevision(branch);
+    FileRevisionKey key = FileRevisionKey.create(FileKey.create(branch, cfg.file.file()), revision);
+    cfg.branchRevision = revision;
+    Config config = configByRevision.getIfPresent(key);
+    if (config != null) {
+      cfg.loadFrom(config);
+      return true;
+    }
+    try (Repository git = gitMgr.openRepository(branch.project())) {
+      cfg.load(branch.project(), git, ObjectId.zeroId().equals(revision) ? null : revision);
+    }
+    configByRevision.put(key, cfg.getConfig());
+    return false;
+  }
+
+  /** Get the current revision of the branch, or the zero id if the branch does not exist. */
+  public ObjectId getRevision(BranchNameKey branch) throws IOException {
+    try {
+      return revisionByBranch.get(branch, () -> readRevision(branch));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  protected ObjectId readRevision(BranchNameKey branch) throws IOException {
+    try (Repository git = gitMgr.openRepository(branch.project())) {
+      Ref ref = git.exactRef(branch.branch());
+      return ref == null || ref.getObjectId() == null ? ObjectId.zeroId() : ref.getObjectId();
+    }
+  }
+
+  @Override
+  public void onGitReferenceUpdated(Event event) {
+    revisionByBranch.invalidate(
+        BranchNameKey.create(Project.nameKey(event.getProjectName()), event.getRefName()));
+  }
+}
@@ -0,0 +1,202 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.task.TaskConfig.External;
+import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * Warms the server wide task config caches in the background when the plugin starts.
+ *
+ * <p>Starting from the root config, every task config file reachable through subtask,
+ * preload-task, subtasks-file and subtasks-external references is loaded into the
+ * TaskConfigFileCache, and the references are parsed into the TaskReferenceCache, so that the first
+ * requests after a restart do not all pay for cold git reads. Files are loaded without a calling
+ * user, visibility is still checked by the TaskConfigCache of each request. The walk stops once
+ * evaluation.warmUpTimeout has elapsed.
+ */
+@Singleton
+public class TaskConfigWarmer implements LifecycleListener {
+  private static final FluentLogger log = FluentLogger.forEnclosingClass();
+
+  public static class Module extends LifecycleModule {
+    @Override
+    protected void configure() {
+      listener().to(TaskConfigWarmer.class);
+    }
+  }
+
+  protected static final String[] TASK_SECTIONS = {
+    TaskConfig.SECTION_ROOT, TaskConfig.SECTION_TASK, TaskConfig.SECTION_TASKS_FACTORY
+  };
+
+  protected final WorkQueue workQueue;
+  protected final TaskConfigFileCache taskConfigFileCache;
+  protected final TaskExpression.Factory taskExpressionFactory;
+  protected final AccountCache accountCache;
+  protected final AllUsersName allUsers;
+  protected final TaskPluginConfiguration config;
+  protected volatile Future<?> warmUp;
+
+  @Inject
+  public TaskConfigWarmer(
+      WorkQueue workQueue,
+      TaskConfigFileCache taskConfigFileCache,
+      TaskExpression.Factory taskExpressionFactory,
+      AccountCache accountCache,
+      AllUsersNameProvider allUsersNameProvider,
+      TaskPluginConfiguration config) {
+    this.workQueue = workQueue;
+    this.taskConfigFileCache = taskConfigFileCache;
+    this.taskExpressionFactory = taskExpressionFactory;
+    this.accountCache = accountCache;
+    this.allUsers = allUsersNameProvider.get();
+    this.config = config;
+  }
+
+  @Override
+  public void start() {
+    long timeout = config.getWarmUpTimeoutMillis();
+    if (timeout > 0) {
+      warmUp = workQueue.getDefaultQueue().submit(() -> warmUp(timeout));
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (warmUp != null) {
+      warmUp.cancel(true);
+      warmUp = null;
+    }
+  }
+
+  protected void warmUp(long timeoutMillis) {
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    FileKey root = FileKey.create(config.getRootConfigBranch(), TaskFileConstants.TASK_CFG);
+    Set<FileKey> seen = new HashSet<>();
+    Deque<FileKey> pending = new ArrayDeque<>();
+    seen.add(root);
+    pending.add(root);
+    int loaded = 0;
+    log.atInfo().log("Warming up task configs from %s", TaskMetrics.getFileName(root));
+    while (!pending.isEmpty()) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      if (System.nanoTime() - deadline > 0) {
+        log.atWarning().log(
+            "Task config warm up timed out after %d ms, %d files loaded, %d files left",
+            timeoutMillis, loaded, pending.size());
+        return;
+      }
+      FileKey file = pending.remove();
+      try {
+        TaskConfig cfg = new TaskConfig(file, true, false);
+        taskConfigFileCache.load(cfg, file.branch());
+        loaded++;
+        for (FileKey referenced : getReferencedFiles(cfg)) {
+          if (seen.add(referenced)) {
+            pending.add(referenced);
+          }
+        }
+      } catch (IOException | ConfigInvalidException | RuntimeException e) {
+        log.atWarning().withCause(e).log(
+            "Cannot warm up task config %s", TaskMetrics.getFileName(file));
+      }
+      log.atInfo().atMostEvery(10, TimeUnit.SECONDS).log(
+          "Task config warm up: %d files loaded, %d files left", loaded, pending.size());
+    }
+    log.atInfo().log(
+        "Task config warm up done: %d files loaded in %d ms",
+        loaded, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  protected Set<FileKey> getReferencedFiles(TaskConfig cfg) {
+    Set<FileKey> files = new HashSet<>();
+    for (String section : TASK_SECTIONS) {
+      for (Task task : cfg.getTasks(section)) {
+        for (ConfigSourcedValue subTask : task.subTasks) {
+          addExpressionFiles(files, subTask.sourceFile(), subTask.value());
+        }
+        if (task.preloadTask != null) {
+          addExpressionFiles(files, cfg.file, task.preloadTask);
+        }
+        for (ConfigSourcedValue subTasksFile : task.subTasksFiles) {
+          try {
+            files.add(
+                FileKey.create(
+                    cfg.file.branch(), TaskTree.resolveTaskFileName(subTasksFile.value())));
+          } catch (ConfigInvalidException e) {
+            // Reported when the task is evaluated
+          }
+        }
+        for (ConfigSourcedValue subTasksExternal : task.subTasksExternals) {
+          addExternalFile(files, cfg.getExternal(subTasksExternal.value()));
+        }
+      }
+    }
+    return files;
+  }
+
+  protected void addExpressionFiles(Set<FileKey> files, FileKey relativeTo, String expression) {
+    try {
+      for (TaskKey key : taskExpressionFactory.create(relativeTo, expression)) {
+        files.add(key.subSection().file());
+      }
+    } catch (NoSuchElementException | RuntimeConfigInvalidException e) {
+      // The end of a non optional expression, or a reference reported when the task is evaluated
+    }
+  }
+
+  protected void addExternalFile(Set<FileKey> files, External external) {
+    if (external == null || external.user == null) {
+      return;
+    }
+    Optional<AccountState> account = accountCache.getByUsername(external.user);
+    if (account.isPresent()) {
+      try {
+        files.add(
+            FileKey.create(
+                BranchNameKey.create(allUsers, RefNames.refsUsers(account.get().account().id())),
+                TaskTree.resolveTaskFileName(external.file)));
+      } catch (ConfigInvalidException e) {
+        // Reported when the task is evaluated
+      }
+    }
+  }
+}
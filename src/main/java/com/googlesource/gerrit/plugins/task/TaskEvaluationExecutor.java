@@ -0,0 +1,97 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A bounded pool of threads used to evaluate the tasks of several changes concurrently.
+ *
+ * <p>The pool is only created when more than one evaluation thread is configured, otherwise
+ * isEnabled() returns false and evaluations are expected to happen on the calling thread.
+ */
+@Singleton
+public class TaskEvaluationExecutor implements LifecycleListener {
+  protected static final String QUEUE_NAME = "TaskEvaluation";
+
+  public static class Module extends LifecycleModule {
+    @Override
+    protected void configure() {
+      listener().to(TaskEvaluationExecutor.class);
+    }
+  }
+
+  protected final WorkQueue workQueue;
+  protected final int threads;
+  protected volatile ScheduledExecutorService executor;
+
+  @Inject
+  public TaskEvaluationExecutor(WorkQueue workQueue, TaskPluginConfiguration config) {
+    this.workQueue = workQueue;
+    this.threads = config.getEvaluationThreads();
+  }
+
+  @Override
+  public void start() {
+    if (threads > 1) {
+      executor = workQueue.createQueue(threads, QUEUE_NAME);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return executor != null;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Run the callable on a pool thread with the request context of the calling thread, so that the
+   * current user and the permission checks reached while evaluating tasks are those of the caller.
+   *
+   * <p>The context is copied explicitly rather than with a RequestScopePropagator, since the
+   * plugin's system injector, which creates the task evaluations of change queries, has none.
+   */
+  public <T> Future<T> submit(Callable<T> callable) {
+    RequestContext context = ThreadLocalRequestContext.getContext();
+    return executor.submit(
+        () -> {
+          RequestContext old = ThreadLocalRequestContext.setContext(context);
+          try {
+            return callable.call();
+          } finally {
+            ThreadLocalRequestContext.setContext(old);
+          }
+        });
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Server metrics of task evaluations.
+ *
+ * <p>Unlike the Statistics of each class, which are only collected for a request using
+ * --include-statistics, these are always collected unless disabled with evaluation.metrics, in
+ * which case they are registered with a DisabledMetricMaker and recording them is a no-op.
+ */
+@Singleton
+public class TaskMetrics {
+  public final Timer0 evaluationLatency;
+  public final Counter0 nodesEvaluated;
+  public final Timer0 predicateParseLatency;
+  public final Counter0 matchCacheHits;
+  public final Counter0 matchCacheMisses;
+  public final Timer1<String> configLoadLatency;
+  public final Timer0 namesFactoryQueryLatency;
+
+  @Inject
+  public TaskMetrics(MetricMaker metricMaker, TaskPluginConfiguration config) {
+    MetricMaker maker = config.isMetricsEnabled() ? metricMaker : new DisabledMetricMaker();
+    evaluationLatency =
+        maker.newTimer(
+            "evaluation/latency",
+            new Description("Time to evaluate the tasks of the changes of a request")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    nodesEvaluated =
+        maker.newCounter(
+            "evaluation/nodes",
+            new Description("Number of task nodes evaluated").setRate().setUnit("nodes"));
+    predicateParseLatency =
+        maker.newTimer(
+            "predicate/parse_latency",
+            new Description("Time to parse a task query into a predicate")
+                .setCumulative()
+                .setUnit(Units.MICROSECONDS));
+    matchCacheHits =
+        maker.newCounter(
+            "match_cache/hits",
+            new Description("Task queries answered from the per request match cache")
+                .setRate()
+                .setUnit("matches"));
+    matchCacheMisses =
+        maker.newCounter(
+            "match_cache/misses",
+            new Description("Task queries matched against a change")
+                .setRate()
+                .setUnit("matches"));
+    configLoadLatency =
+        maker.newTimer(
+            "config/load_latency",
+            new Description("Time to load a task config file for a request")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            Field.ofString("file", (metadataBuilder, fieldValue) -> {})
+                .description("The project, branch and name of the task config file")
+                .build());
+    namesFactoryQueryLatency =
+        maker.newTimer(
+            "names_factory/query_latency",
+            new Description("Time to run the changes query of a CHANGE names-factory")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  public static String getFileName(FileKey file) {
+    return file.branch().project().get() + ":" + file.branch().branch() + ":" + file.file();
+  }
+}
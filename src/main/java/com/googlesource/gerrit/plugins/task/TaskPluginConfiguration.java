@@ -22,6 +22,7 @@ import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.server.config.AllProjectsName;
 import com.google.gerrit.server.config.AllProjectsNameProvider;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.inject.Inject;
@@ -29,6 +30,7 @@ import com.google.inject.Singleton;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.lib.Config;
 
 @Singleton
@@ -38,6 +40,12 @@ public class TaskPluginConfiguration {
   private static final String CACHEABLE_PREDICATES_KEY = "className";
   private static final String DEPRECATED_CACHEABLE_PREDICATES = "cacheable-predicates";
   private static final String DEPRECATED_CACHEABLE_PREDICATES_KEY = "byBranch-className";
+  private static final String EVALUATION = "evaluation";
+  private static final String EVALUATION_THREADS_KEY = "threads";
+  private static final String EVALUATION_CACHE_RESULTS_KEY = "cacheResults";
+  private static final String EVALUATION_METRICS_KEY = "metrics";
+  private static final String EVALUATION_WARM_UP_TIMEOUT_KEY = "warmUpTimeout";
+  private static final String EVALUATION_ORDER_PREDICATES_KEY = "orderPredicates";
   private static final String ROOT_CONFIG = "rootConfig";
   private static final String ROOT_CONFIG_PROJECT_KEY = "project";
   private static final String ROOT_CONFIG_BRANCH_KEY = "branch";
@@ -47,6 +55,11 @@ public class TaskPluginConfiguration {
   private final AllProjectsName allProjectsName;
   private final Set<String> cacheableByBranchPredicateClassNames;
   private final BranchNameKey rootConfigBranch;
+  private final int evaluationThreads;
+  private final boolean cacheEvaluationResults;
+  private final boolean metricsEnabled;
+  private final long warmUpTimeoutMillis;
+  private final boolean orderPredicates;
 
   @Inject
   public TaskPluginConfiguration(
@@ -61,6 +74,19 @@ public class TaskPluginConfiguration {
     cacheableByBranchPredicateClassNames =
         new HashSet<>(Arrays.asList(readCacheableByBranchPredicateClassNames()));
     rootConfigBranch = readRootConfigBranch();
+    evaluationThreads = Math.max(1, pluginConfig.getInt(EVALUATION, EVALUATION_THREADS_KEY, 1));
+    cacheEvaluationResults =
+        pluginConfig.getBoolean(EVALUATION, EVALUATION_CACHE_RESULTS_KEY, false);
+    metricsEnabled = pluginConfig.getBoolean(EVALUATION, EVALUATION_METRICS_KEY, true);
+    warmUpTimeoutMillis =
+        ConfigUtil.getTimeUnit(
+            pluginConfig,
+            EVALUATION,
+            null,
+            EVALUATION_WARM_UP_TIMEOUT_KEY,
+            0,
+            TimeUnit.MILLISECONDS);
+    orderPredicates = pluginConfig.getBoolean(EVALUATION, EVALUATION_ORDER_PREDICATES_KEY, false);
   }
 
   public Set<String> getCacheableByBranchPredicateClassNames() {
@@ -71,6 +97,26 @@ public class TaskPluginConfiguration {
     return rootConfigBranch;
   }
 
+  public int getEvaluationThreads() {
+    return evaluationThreads;
+  }
+
+  public boolean isCacheEvaluationResults() {
+    return cacheEvaluationResults;
+  }
+
+  public boolean isMetricsEnabled() {
+    return metricsEnabled;
+  }
+
+  public long getWarmUpTimeoutMillis() {
+    return warmUpTimeoutMillis;
+  }
+
+  public boolean isOrderPredicates() {
+    return orderPredicates;
+  }
+
   private String[] readCacheableByBranchPredicateClassNames() {
     String[] fromPluginConfig =
         pluginConfig.getStringList(
@@ -14,11 +14,14 @@
 
 package com.googlesource.gerrit.plugins.task;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.api.access.PluginPermission;
 import com.google.gerrit.extensions.common.PluginDefinedInfo;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.DynamicOptions.BeanProvider;
 import com.google.gerrit.server.change.ChangePluginDefinedInfoFactory;
 import com.google.gerrit.server.permissions.PermissionBackend;
@@ -29,13 +32,18 @@ import com.googlesource.gerrit.plugins.task.TaskTree.Node;
 import com.googlesource.gerrit.plugins.task.cli.PatchSetArgument;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFactory {
@@ -58,12 +66,18 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
     public long numberOfChanges;
     public long numberOfChangeNodes;
     public long numberOfDuplicates;
+    public long numberOfUnexpandedFails;
     public long numberOfNodes;
     public long numberOfTaskPluginAttributes;
     public Object predicateCache;
     public Object matchCache;
+    public Object subPredicateMatchCache;
+    public Object configCache;
+    public TaskReferenceCache.Statistics referenceCache;
     public Preloader.Statistics preloader;
     public TaskTree.Statistics treeCaches;
+    /** Server wide, accumulated since the server started rather than specific to this query. */
+    public PredicateCosts.Statistics serverPredicateCosts;
   }
 
   public static class TaskAttribute {
@@ -87,6 +101,8 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
     public Status status;
     public List<TaskAttribute> subTasks;
     public Long evaluationMilliSeconds;
+    /** The number of tasks of each status, this one included, only set in summaries. */
+    public Map<Status, Integer> counts;
     public Statistics statistics;
 
     public TaskAttribute(String name) {
@@ -100,13 +116,21 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
   }
 
   protected final String pluginName;
+  protected final TaskTree.Factory taskTreeFactory;
   protected final TaskTree definitions;
   protected final PredicateCache predicateCache;
   protected final boolean hasViewPathsCapability;
   protected final TaskPath.Factory taskPathFactory;
   protected final TaskConfigCache taskConfigCache;
+  protected final TaskEvaluationExecutor executor;
+  protected final TaskReferenceCache taskReferenceCache;
+  protected final TaskAttributeCache taskAttributeCache;
+  protected final TaskPluginConfiguration taskPluginConfiguration;
+  protected final TaskMetrics metrics;
 
   protected Modules.MyOptions options;
+  protected boolean isAttributeCacheable;
+  protected String optionsKey;
   protected TaskPluginAttribute lastTaskPluginAttribute;
   protected Statistics statistics;
 
@@ -117,8 +141,14 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
       PredicateCache predicateCache,
       PermissionBackend permissionBackend,
       TaskPath.Factory taskPathFactory,
-      TaskConfigCache taskConfigCache) {
+      TaskConfigCache taskConfigCache,
+      TaskEvaluationExecutor executor,
+      TaskReferenceCache taskReferenceCache,
+      TaskAttributeCache taskAttributeCache,
+      TaskPluginConfiguration taskPluginConfiguration,
+      TaskMetrics metrics) {
     this.pluginName = pluginName;
+    this.taskTreeFactory = taskTreeFactory;
     this.definitions = taskTreeFactory.create(taskConfigCache);
     this.predicateCache = predicateCache;
     this.hasViewPathsCapability =
@@ -127,30 +157,165 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
             .testOrFalse(new PluginPermission(this.pluginName, ViewPathsCapability.VIEW_PATHS));
     this.taskPathFactory = taskPathFactory;
     this.taskConfigCache = taskConfigCache;
+    this.executor = executor;
+    this.taskReferenceCache = taskReferenceCache;
+    this.taskAttributeCache = taskAttributeCache;
+    this.taskPluginConfiguration = taskPluginConfiguration;
+    this.metrics = metrics;
   }
 
   @Override
   public Map<Change.Id, PluginDefinedInfo> createPluginDefinedInfos(
       Collection<ChangeData> cds, BeanProvider beanProvider, String plugin) {
+    return createPluginDefinedInfos(cds, (Modules.MyOptions) beanProvider.getDynamicBean(plugin));
+  }
+
+  /** Use to evaluate the tasks of changes outside of a change query, such as for streaming. */
+  @SuppressWarnings("try")
+  public Map<Change.Id, PluginDefinedInfo> createPluginDefinedInfos(
+      Collection<ChangeData> cds, Modules.MyOptions options) {
     Map<Change.Id, PluginDefinedInfo> pluginInfosByChange = new HashMap<>();
-    options = (Modules.MyOptions) beanProvider.getDynamicBean(plugin);
+    this.options = options;
+    if (options.summary && !options.all && !options.onlyInvalid) {
+      options.onlyApplicable = true;
+    }
     if (options.all || options.onlyApplicable || options.onlyInvalid) {
       initStatistics();
+      isAttributeCacheable = isAttributeCacheable();
+      optionsKey = getOptionsKey();
       for (PatchSetArgument psa : options.patchSetArguments) {
         taskConfigCache.masquerade(psa);
       }
-      cds.forEach(cd -> pluginInfosByChange.put(cd.getId(), createWithExceptions(cd)));
-      if (lastTaskPluginAttribute != null) {
+      List<ChangeData> changes = new ArrayList<>(cds);
+      List<PluginDefinedInfo> infos;
+      try (Timer0.Context ctx = metrics.evaluationLatency.start()) {
+        infos = isParallel(changes) ? createInParallel(changes) : create(definitions, changes);
+      }
+      for (int i = 0; i < changes.size(); i++) {
+        PluginDefinedInfo info = infos.get(i);
+        pluginInfosByChange.put(changes.get(i).getId(), info);
+        if (info != null) {
+          lastTaskPluginAttribute = (TaskPluginAttribute) info;
+        }
+      }
+      // Never set on attributes of the TaskAttributeCache, which are shared across requests,
+      // since evaluations with statistics do not use that cache
+      if (lastTaskPluginAttribute != null && statistics != null) {
         lastTaskPluginAttribute.queryStatistics = getStatistics(pluginInfosByChange);
       }
     }
     return pluginInfosByChange;
   }
 
-  protected PluginDefinedInfo createWithExceptions(ChangeData c) {
+  protected boolean isParallel(List<ChangeData> changes) {
+    // Statistics are not merged across trees, so only collect them from a sequential evaluation
+    return executor.isEnabled()
+        && changes.size() > 1
+        && !options.includeStatistics;
+  }
+
+  /**
+   * Evaluate contiguous batches of changes concurrently, each batch with its own TaskTree (and
+   * thus its own Preloader, PredicateCache and MatchCache) so that no evaluation state is shared
+   * across threads except for the TaskConfigCache. Results are returned in the order of changes.
+   */
+  protected List<PluginDefinedInfo> createInParallel(List<ChangeData> changes) {
+    int batchSize = (changes.size() + executor.getThreads() - 1) / executor.getThreads();
+    List<Future<List<PluginDefinedInfo>>> futures = new ArrayList<>();
+    boolean isFirst = true;
+    for (List<ChangeData> batch : Lists.partition(changes, batchSize)) {
+      TaskTree tree = isFirst ? definitions : taskTreeFactory.create(taskConfigCache);
+      isFirst = false;
+      futures.add(executor.submit(() -> create(tree, batch)));
+    }
+    List<PluginDefinedInfo> infos = new ArrayList<>(changes.size());
+    try {
+      for (Future<List<PluginDefinedInfo>> future : futures) {
+        infos.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while evaluating tasks", e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException("Failed to evaluate tasks", e.getCause());
+    }
+    return infos;
+  }
+
+  protected List<PluginDefinedInfo> create(TaskTree tree, List<ChangeData> changes) {
+    tree.isOnlyApplicable = options.onlyApplicable;
+    List<PluginDefinedInfo> infos = new ArrayList<>(changes.size());
+    List<TaskAttributeCache.Key> keys = new ArrayList<>(changes.size());
+    List<ChangeData> uncached = new ArrayList<>(changes.size());
+    BitSet isCached = new BitSet(changes.size());
+    for (int i = 0; i < changes.size(); i++) {
+      TaskAttributeCache.Key key = getAttributeCacheKey(tree, changes.get(i));
+      TaskAttributeCache.Entry entry = key == null ? null : taskAttributeCache.get(key);
+      keys.add(key);
+      if (entry == null) {
+        infos.add(null);
+        uncached.add(changes.get(i));
+      } else {
+        infos.add(entry.attribute);
+        isCached.set(i);
+      }
+    }
+    if (uncached.size() > 1) {
+      tree.matchAllRootsApplicable(uncached, options::shouldFilterRoot);
+    }
+    for (int i = isCached.nextClearBit(0); i < changes.size(); i = isCached.nextClearBit(i + 1)) {
+      PluginDefinedInfo info = createWithExceptions(tree, changes.get(i));
+      infos.set(i, info);
+      TaskAttributeCache.Key key = keys.get(i);
+      if (key != null && !tree.hasDynamicNamesFactory) {
+        taskAttributeCache.put(
+            key, (TaskPluginAttribute) info, taskConfigCache.getLoadedRevisions());
+      }
+    }
+    return infos;
+  }
+
+  /** Get the key to cache the attribute of a change with, or null if it may not be cached. */
+  protected TaskAttributeCache.Key getAttributeCacheKey(TaskTree tree, ChangeData cd) {
+    if (!isAttributeCacheable) {
+      return null;
+    }
+    try {
+      return TaskAttributeCache.Key.create(
+          cd.getId(), cd.metaRevisionOrThrow(), tree.user.getCacheKey(), optionsKey);
+    } catch (StorageException e) {
+      return null;
+    }
+  }
+
+  protected boolean isAttributeCacheable() {
+    // Statistics, timings and previews are specific to a single evaluation
+    return taskPluginConfiguration.isCacheEvaluationResults()
+        && !options.includeStatistics
+        && !options.evaluationTime
+        && options.patchSetArguments.isEmpty()
+        && !taskConfigCache.isMasquerading();
+  }
+
+  protected String getOptionsKey() {
+    return String.format(
+        "all:%s applicable:%s invalid:%s paths:%s summary:%s expand-failed:%s only:%s",
+        options.all,
+        options.onlyApplicable,
+        options.onlyInvalid,
+        options.includePaths,
+        options.summary,
+        options.expandFailed,
+        new TreeSet<>(options.includedRoots));
+  }
+
+  protected PluginDefinedInfo createWithExceptions(TaskTree tree, ChangeData c) {
     TaskPluginAttribute a = new TaskPluginAttribute();
     try {
-      for (Node root : definitions.getRootNodes(c)) {
+      for (Node root : tree.getRootNodes(c)) {
         if (root instanceof Node.Invalid) {
           a.roots.add(invalid());
         } else {
@@ -167,7 +332,6 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
     if (a.roots.isEmpty()) {
       return null;
     }
-    lastTaskPluginAttribute = a;
     return a;
   }
 
@@ -180,6 +344,7 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
       this.node = node;
       this.task = node.task;
       attribute = new TaskAttribute(task.name());
+      metrics.nodesEvaluated.increment();
       if (options.includeStatistics) {
         statistics.numberOfNodes++;
         if (node.isChange()) {
@@ -201,7 +366,7 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
 
         boolean applicable;
         try {
-          applicable = node.match(task.applicable);
+          applicable = node.matchApplicable();
         } catch (QueryParseException e) {
           return Optional.of(invalid());
         }
@@ -216,14 +381,14 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
             attribute.change = node.getChangeData().getId().get();
           }
           attribute.hasPass = !node.isDuplicate && (task.pass != null || task.fail != null);
-          if (!node.isDuplicate) {
+          if (!node.isDuplicate && !isUnexpandedFail()) {
             attribute.subTasks = getSubTasks();
           }
           attribute.status = getStatus();
           if (options.onlyInvalid && !isValidQueries()) {
             attribute.status = Status.INVALID;
           }
-          if (options.includePaths) {
+          if (options.includePaths && !options.summary) {
             if (hasViewPathsCapability) {
               attribute.path = taskPathFactory.create(node.taskKey);
             } else {
@@ -236,16 +401,20 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
             if (!options.onlyInvalid
                 || attribute.status == Status.INVALID
                 || attribute.subTasks != null) {
-              if (!options.onlyApplicable) {
-                attribute.applicable = applicable;
-              }
-              if (!node.isDuplicate) {
-                if (task.inProgress != null) {
-                  attribute.inProgress = node.matchOrNull(task.inProgress);
+              if (options.summary) {
+                summarize();
+              } else {
+                if (!options.onlyApplicable) {
+                  attribute.applicable = applicable;
+                }
+                if (!node.isDuplicate) {
+                  if (task.inProgress != null) {
+                    attribute.inProgress = node.matchOrNull(task.inProgress);
+                  }
+                  attribute.exported = task.exported.isEmpty() ? null : task.exported;
                 }
-                attribute.exported = task.exported.isEmpty() ? null : task.exported;
+                attribute.hint = getHint(attribute.status, task);
               }
-              attribute.hint = getHint(attribute.status, task);
 
               if (options.evaluationTime) {
                 attribute.evaluationMilliSeconds = millis() - attribute.evaluationMilliSeconds;
@@ -261,6 +430,50 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
       return Optional.empty();
     }
 
+    /**
+     * Is the task failed, with subtasks which are neither needed for its status (a FAIL does not
+     * depend on them) nor output? Only summaries do not output subtasks, and invalid tasks must be
+     * searched for under failed tasks too.
+     */
+    protected boolean isUnexpandedFail() {
+      if (!options.summary || options.expandFailed || options.onlyInvalid || task.fail == null) {
+        return false;
+      }
+      try {
+        if (node.match(task.fail)) {
+          if (options.includeStatistics) {
+            statistics.numberOfUnexpandedFails++;
+          }
+          return true;
+        }
+      } catch (QueryParseException | StorageException e) {
+        // getStatus() will report the task as invalid
+      }
+      return false;
+    }
+
+    /**
+     * Replace the subtasks with the number of tasks of each status. The subtasks of a summarized
+     * task are only held on to until its own status is known.
+     */
+    protected void summarize() {
+      attribute.counts = new EnumMap<>(Status.class);
+      if (attribute.status != null) {
+        attribute.counts.put(attribute.status, 1);
+      }
+      if (attribute.subTasks != null) {
+        for (TaskAttribute subTask : attribute.subTasks) {
+          if (subTask.counts != null) {
+            subTask.counts.forEach((s, c) -> attribute.counts.merge(s, c, Integer::sum));
+          } else if (subTask.status != null) {
+            attribute.counts.merge(subTask.status, 1, Integer::sum);
+          }
+        }
+      }
+      attribute.subTasks = null;
+      attribute.hasPass = null;
+    }
+
     protected TaskAttribute invalid() {
       TaskAttribute invalid = TaskPluginDefinedInfoFactory.invalid();
       if (task.isVisible) {
@@ -395,6 +608,7 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
       definitions.predicateCache.initStatistics(options.summaryCount);
       definitions.matchCache.initStatistics(options.summaryCount);
       definitions.preloader.initStatistics(options.summaryCount);
+      taskConfigCache.initStatistics(options.summaryCount);
       definitions.initStatistics(options.summaryCount);
     }
   }
@@ -406,8 +620,12 @@ public class TaskPluginDefinedInfoFactory implements ChangePluginDefinedInfoFact
           pluginInfosByChange.values().stream().filter(tpa -> tpa != null).count();
       statistics.predicateCache = definitions.predicateCache.getStatistics();
       statistics.matchCache = definitions.matchCache.getStatistics();
+      statistics.subPredicateMatchCache = definitions.matchCache.getSubPredicateStatistics();
+      statistics.configCache = taskConfigCache.getStatistics();
+      statistics.referenceCache = taskReferenceCache.getStatistics();
       statistics.preloader = definitions.preloader.getStatistics();
       statistics.treeCaches = definitions.getStatistics();
+      statistics.serverPredicateCosts = definitions.predicateCache.getPredicateCostsStatistics();
     }
     return statistics;
   }
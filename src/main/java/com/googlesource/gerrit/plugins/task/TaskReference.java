@@ -15,14 +15,20 @@
 package com.googlesource.gerrit.plugins.task;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.gerrit.server.account.AccountCache;
 import com.google.gerrit.server.account.GroupCache;
 import com.google.gerrit.server.config.AllProjectsNameProvider;
 import com.google.gerrit.server.config.AllUsersNameProvider;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
@@ -35,8 +41,55 @@ import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /** This class is used by TaskExpression to decode the task from task reference. */
 public class TaskReference {
+  /** One call on a TaskKey.Builder needed to resolve a reference. */
+  @FunctionalInterface
+  public interface Step {
+    void apply(TaskKey.Builder builder) throws ConfigInvalidException;
+  }
+
+  /**
+   * A parsed reference, independent of the file it is relative to, as the Steps to replay on a
+   * TaskKey.Builder to resolve it. Replaying is needed since user and group names must be looked up
+   * again on every use.
+   */
+  public static class Parsed {
+    protected static final Parsed INVALID = new Parsed(ImmutableList.of(), false);
+
+    protected final ImmutableList<Step> steps;
+    protected final boolean isValid;
+
+    protected Parsed(ImmutableList<Step> steps, boolean isValid) {
+      this.steps = steps;
+      this.isValid = isValid;
+    }
+
+    protected Parsed(Step... steps) {
+      this(ImmutableList.copyOf(steps), true);
+    }
+
+    public TaskKey resolve(TaskKey.Builder builder) throws ConfigInvalidException {
+      if (!isValid) {
+        throw new NoSuchElementException();
+      }
+      for (Step step : steps) {
+        step.apply(builder);
+      }
+      return builder.buildTaskKey();
+    }
+  }
+
+  /** The characters of a NAME token in TaskReference.g4, plus '@' and '%' after the first one */
+  protected static final String NAME_CHARS = "-A-Za-z0-9:?#\\[\\]!$&'()*+,;=_.\\\\~";
+
+  protected static final Pattern NAME =
+      Pattern.compile("[" + NAME_CHARS + "][" + NAME_CHARS + "@%]*");
+
+  /** An INTERNAL_GROUP_UUID token as defined in TaskReference.g4, it takes precedence over NAME */
+  protected static final Pattern INTERNAL_GROUP_UUID = Pattern.compile("[0-9a-f]{40}");
+
   protected final String reference;
   protected final TaskKey.Builder taskKeyBuilder;
+  protected final TaskReferenceCache taskReferenceCache;
 
   interface Factory {
     TaskReference create(FileKey relativeTo, String reference);
@@ -49,6 +102,7 @@ public class TaskReference {
       AccountCache accountCache,
       GroupCache groupCache,
       TaskPluginConfiguration config,
+      TaskReferenceCache taskReferenceCache,
       @Assisted FileKey relativeTo,
       @Assisted String reference) {
     this(
@@ -59,12 +113,19 @@ public class TaskReference {
             accountCache,
             groupCache,
             config),
+        taskReferenceCache,
         reference);
   }
 
   @VisibleForTesting
   public TaskReference(TaskKey.Builder taskKeyBuilder, String reference) {
+    this(taskKeyBuilder, null, reference);
+  }
+
+  protected TaskReference(
+      TaskKey.Builder taskKeyBuilder, TaskReferenceCache taskReferenceCache, String reference) {
     this.taskKeyBuilder = taskKeyBuilder;
+    this.taskReferenceCache = taskReferenceCache;
     this.reference = reference.trim();
     if (reference.isEmpty()) {
       throw new NoSuchElementException();
@@ -72,16 +133,55 @@ public class TaskReference {
   }
 
   public TaskKey getTaskKey() throws ConfigInvalidException {
-    ParseTreeWalker walker = new ParseTreeWalker();
+    Parsed parsed =
+        taskReferenceCache == null ? parse(reference) : taskReferenceCache.get(reference);
+    return parsed.resolve(taskKeyBuilder);
+  }
+
+  /** Parse the simplest and most common forms by hand, and the others with the grammar. */
+  public static Parsed parse(String reference) {
+    int delimiter = reference.indexOf('^');
+    if (delimiter < 0) {
+      // name
+      return new Parsed(b -> b.setTaskName(reference));
+    }
+    if (delimiter == reference.lastIndexOf('^') && delimiter < reference.length() - 1) {
+      String task = reference.substring(delimiter + 1);
+      if (delimiter == 0) {
+        // ^name
+        return new Parsed(b -> b.setTaskName(task), TaskKey.Builder::setRefRootFile);
+      }
+      List<String> names = Splitter.on('/').splitToList(reference.substring(0, delimiter));
+      if (names.stream().allMatch(TaskReference::isName)) {
+        // dir/file^name
+        Path path = toPath(names);
+        return new Parsed(b -> b.setTaskName(task), b -> b.setPath(path));
+      }
+    }
+    return parseWithGrammar(reference);
+  }
+
+  protected static boolean isName(String name) {
+    return NAME.matcher(name).matches() && !INTERNAL_GROUP_UUID.matcher(name).matches();
+  }
+
+  protected static Path toPath(List<String> names) {
+    return names.stream()
+        .map(name -> Paths.get(name))
+        .reduce(Paths.get(""), (a, b) -> a.resolve(b));
+  }
+
+  public static Parsed parseWithGrammar(String reference) {
+    TaskReferenceListener listener = new TaskReferenceListener();
     try {
-      walker.walk(new TaskReferenceListener(taskKeyBuilder), parse());
-    } catch (RuntimeConfigInvalidException e) {
-      throw e.checkedException;
+      new ParseTreeWalker().walk(listener, parseTree(reference));
+    } catch (NoSuchElementException e) {
+      return Parsed.INVALID;
     }
-    return taskKeyBuilder.buildTaskKey();
+    return new Parsed(ImmutableList.copyOf(listener.steps), true);
   }
 
-  protected ParseTree parse() {
+  protected static ParseTree parseTree(String reference) {
     Lexer lexer = new TaskReferenceLexer(CharStreams.fromString(reference));
     lexer.removeErrorListeners();
     lexer.addErrorListener(TaskReferenceErrorListener.INSTANCE);
@@ -103,80 +203,60 @@ public class TaskReference {
     }
   }
 
-  protected class TaskReferenceListener extends TaskReferenceBaseListener {
-    TaskKey.Builder builder;
-
-    TaskReferenceListener(TaskKey.Builder builder) {
-      this.builder = builder;
-    }
+  protected static class TaskReferenceListener extends TaskReferenceBaseListener {
+    protected final List<Step> steps = new ArrayList<>();
 
     @Override
     public void enterAbsolute(TaskReferenceParser.AbsoluteContext ctx) {
-      builder.setAbsolute();
+      steps.add(TaskKey.Builder::setAbsolute);
     }
 
     @Override
     public void enterRelative(TaskReferenceParser.RelativeContext ctx) {
-      try {
-        builder.setPath(
-            ctx.dir().stream()
-                .map(dir -> Paths.get(dir.NAME().getText()))
-                .reduce(Paths.get(""), (a, b) -> a.resolve(b))
-                .resolve(ctx.NAME().getText()));
-      } catch (ConfigInvalidException e) {
-        throw new RuntimeConfigInvalidException(e);
-      }
+      Path path =
+          ctx.dir().stream()
+              .map(dir -> Paths.get(dir.NAME().getText()))
+              .reduce(Paths.get(""), (a, b) -> a.resolve(b))
+              .resolve(ctx.NAME().getText());
+      steps.add(b -> b.setPath(path));
     }
 
     @Override
     public void enterReference(TaskReferenceParser.ReferenceContext ctx) {
-      builder.setTaskName(ctx.TASK().getText());
+      String task = ctx.TASK().getText();
+      steps.add(b -> b.setTaskName(task));
     }
 
     @Override
     public void enterFile_path(TaskReferenceParser.File_pathContext ctx) {
       if (ctx.ROOT_PROJECT() != null || (ctx.FWD_SLASH() != null && ctx.absolute() != null)) {
-        builder.setReferringRootConfigBranchTask();
+        steps.add(TaskKey.Builder::setReferringRootConfigBranchTask);
       }
 
       if (ctx.absolute() == null && ctx.relative() == null) {
-        try {
-          builder.setRefRootFile();
-        } catch (ConfigInvalidException e) {
-          throw new RuntimeConfigInvalidException(e);
-        }
+        steps.add(TaskKey.Builder::setRefRootFile);
       }
     }
 
     @Override
     public void enterUser(TaskReferenceParser.UserContext ctx) {
-      try {
-        builder.setUsername(ctx.NAME().getText());
-      } catch (ConfigInvalidException e) {
-        throw new RuntimeConfigInvalidException(e);
-      }
+      String username = ctx.NAME().getText();
+      steps.add(b -> b.setUsername(username));
     }
 
     @Override
     public void enterGroup_name(TaskReferenceParser.Group_nameContext ctx) {
-      try {
-        String groupName =
-            ctx.NAME() == null
-                ? (ctx.NAME_WITH_SPACES() == null ? "" : ctx.NAME_WITH_SPACES().getText())
-                : ctx.NAME().getText();
-        builder.setGroupName(groupName);
-      } catch (ConfigInvalidException e) {
-        throw new RuntimeConfigInvalidException(e);
-      }
+      String groupName =
+          ctx.NAME() == null
+              ? (ctx.NAME_WITH_SPACES() == null ? "" : ctx.NAME_WITH_SPACES().getText())
+              : ctx.NAME().getText();
+      steps.add(b -> b.setGroupName(groupName));
     }
 
     @Override
     public void enterGroup_uuid(TaskReferenceParser.Group_uuidContext ctx) {
-      try {
-        builder.setGroupUUID(ctx.INTERNAL_GROUP_UUID().getText());
-      } catch (ConfigInvalidException e) {
-        throw new RuntimeConfigInvalidException(e);
-      }
+      String uuid = ctx.INTERNAL_GROUP_UUID().getText();
+      steps.add(b -> b.setGroupUUID(uuid));
     }
   }
 }
@@ -0,0 +1,96 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.googlesource.gerrit.plugins.task.TaskReference.Parsed;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A server wide cache of parsed task references.
+ *
+ * <p>References are cached by their text alone, the file they are relative to and the user and
+ * group lookups are only applied when a parsed reference is resolved.
+ */
+@Singleton
+public class TaskReferenceCache {
+  protected static final String PARSED_BY_REFERENCE = "task_references";
+
+  public static class Module extends CacheModule {
+    @Override
+    protected void configure() {
+      cache(PARSED_BY_REFERENCE, String.class, Parsed.class)
+          .maximumWeight(256 * 1024)
+          .weigher(ReferenceWeigher.class);
+    }
+  }
+
+  /** Weigh entries by the length of their reference as a rough proxy of the parsed size. */
+  public static class ReferenceWeigher implements Weigher<String, Parsed> {
+    @Override
+    public int weigh(String reference, Parsed parsed) {
+      return reference.length();
+    }
+  }
+
+  /** Server wide statistics, since the server was started. */
+  public static class Statistics {
+    public long hits;
+    public long misses;
+    public long parseNanoseconds;
+    public long estimatedSavedNanoseconds;
+  }
+
+  protected final Cache<String, Parsed> parsedByReference;
+  protected final LongAdder hits = new LongAdder();
+  protected final LongAdder misses = new LongAdder();
+  protected final LongAdder parseNanoseconds = new LongAdder();
+
+  @Inject
+  public TaskReferenceCache(@Named(PARSED_BY_REFERENCE) Cache<String, Parsed> parsedByReference) {
+    this.parsedByReference = parsedByReference;
+  }
+
+  public Parsed get(String reference) {
+    Parsed parsed = parsedByReference.getIfPresent(reference);
+    if (parsed != null) {
+      hits.increment();
+      return parsed;
+    }
+    misses.increment();
+    long start = System.nanoTime();
+    parsed = TaskReference.parse(reference);
+    parseNanoseconds.add(System.nanoTime() - start);
+    parsedByReference.put(reference, parsed);
+    return parsed;
+  }
+
+  public Statistics getStatistics() {
+    Statistics statistics = new Statistics();
+    statistics.hits = hits.sum();
+    statistics.misses = misses.sum();
+    statistics.parseNanoseconds = parseNanoseconds.sum();
+    if (statistics.misses > 0) {
+      statistics.estimatedSavedNanoseconds =
+          statistics.hits * statistics.parseNanoseconds / statistics.misses;
+    }
+    return statistics;
+  }
+}
@@ -16,14 +16,17 @@ package com.googlesource.gerrit.plugins.task;
 
 import static java.util.stream.Collectors.toList;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.Account;
 import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.AnonymousUser;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.DynamicOptions;
@@ -47,19 +50,19 @@ import com.googlesource.gerrit.plugins.task.statistics.HitHashMapOfCollection;
 import com.googlesource.gerrit.plugins.task.statistics.StatisticsMap;
 import com.googlesource.gerrit.plugins.task.statistics.StopWatch;
 import com.googlesource.gerrit.plugins.task.statistics.TracksStatistics;
+import com.googlesource.gerrit.plugins.task.util.Ancestors;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.util.StringUtils;
 
@@ -76,6 +79,18 @@ public class TaskTree {
     TaskTree create(@Assisted TaskConfigCache taskConfigCache);
   }
 
+  /** Identifies a node in the path of its descendants, which are duplicates if they match it. */
+  @AutoValue
+  public abstract static class NodeKey {
+    public static NodeKey create(Change.Id change, TaskKey task) {
+      return new AutoValue_TaskTree_NodeKey(change, task);
+    }
+
+    public abstract Change.Id change();
+
+    public abstract TaskKey task();
+  }
+
   @FunctionalInterface
   public interface NodeFactory {
     Node create(NodeList parent, Task definition) throws Exception;
@@ -85,6 +100,9 @@ public class TaskTree {
     public Object definitionsPerSubSectionCache;
     public Object definitionsByBranchBySubSectionCache;
     public Object changesByNamesFactoryQueryCache;
+    public long sharedChangeQueryCacheHits;
+    public long sharedChangeQueryCacheMisses;
+    public long rootsSkippedByBranch;
     public Properties.Statistics properties;
     public transient int summaryCount;
   }
@@ -103,6 +121,11 @@ public class TaskTree {
   protected final NodeList root = new NodeList();
   protected final Provider<ChangeQueryBuilder> changeQueryBuilderProvider;
   protected final Provider<ChangeQueryProcessor> changeQueryProcessorProvider;
+  protected final ChangeData.Factory changeDataFactory;
+  protected final ChangeQueryCache changeQueryCache;
+  protected final TaskMetrics metrics;
+  protected final BranchApplicabilityCache branchApplicabilityCache;
+  protected final Map<BranchNameKey, NodeList> rootByBranch = new HashMap<>();
   protected final StatisticsMap<String, List<ChangeData>> changesByNamesFactoryQuery =
       new HitHashMap<>();
   protected final StatisticsMap<SubSectionKey, List<Task>> definitionsBySubSection =
@@ -112,6 +135,16 @@ public class TaskTree {
 
   protected ChangeData changeData;
   protected Statistics statistics;
+  /**
+   * Set once a CHANGE or PLUGIN names-factory has been expanded, the tasks they create may change
+   * without the evaluated change being updated.
+   */
+  protected boolean hasDynamicNamesFactory;
+  /**
+   * Set when only applicable tasks are output, root tasks known to be inapplicable to the branch of
+   * a change are then skipped without creating their nodes.
+   */
+  protected boolean isOnlyApplicable;
 
   @Inject
   public TaskTree(
@@ -121,6 +154,10 @@ public class TaskTree {
       CurrentUser user,
       Provider<ChangeQueryBuilder> changeQueryBuilderProvider,
       Provider<ChangeQueryProcessor> changeQueryProcessorProvider,
+      ChangeData.Factory changeDataFactory,
+      ChangeQueryCache changeQueryCache,
+      TaskMetrics metrics,
+      BranchApplicabilityCache branchApplicabilityCache,
       PredicateCache predicateCache,
       TaskExpression.Factory taskExpressionFactory,
       Preloader.Factory preloaderFactory,
@@ -131,8 +168,12 @@ public class TaskTree {
     this.user = user != null ? user : anonymousUser;
     this.changeQueryProcessorProvider = changeQueryProcessorProvider;
     this.changeQueryBuilderProvider = changeQueryBuilderProvider;
+    this.changeDataFactory = changeDataFactory;
+    this.changeQueryCache = changeQueryCache;
+    this.metrics = metrics;
+    this.branchApplicabilityCache = branchApplicabilityCache;
     this.predicateCache = predicateCache;
-    this.matchCache = new MatchCache(predicateCache);
+    this.matchCache = new MatchCache(predicateCache, metrics);
     this.taskConfigCache = taskConfigCache;
     this.taskExpressionFactory = taskExpressionFactory;
     this.preloader = preloaderFactory.create(taskConfigCache);
@@ -142,16 +183,55 @@ public class TaskTree {
   public List<Node> getRootNodes(ChangeData changeData)
       throws ConfigInvalidException, IOException, StorageException {
     this.changeData = changeData;
-    root.path = Collections.emptyList();
-    root.duplicateKeys = Collections.emptyList();
+    NodeList root =
+        isOnlyApplicable
+            ? rootByBranch.computeIfAbsent(changeData.change().getDest(), BranchRoot::new)
+            : this.root;
+    root.path = Ancestors.empty();
+    root.duplicateKeys = Ancestors.empty();
     return root.getSubNodes();
   }
 
+  /** Is the task known to not be applicable to any change of the branch? */
+  protected boolean isInapplicableToBranch(Task def, BranchNameKey branch) {
+    // Invisible tasks are still output (as unknown) for untrusted nodes, even when inapplicable
+    if (!def.isVisible || def.applicable == null || def.applicable.contains("${")) {
+      return false;
+    }
+    return Boolean.FALSE.equals(branchApplicabilityCache.getIfPresent(branch, def.applicable));
+  }
+
+  /**
+   * Match the applicability of the root tasks against all the changes at once, so that the root
+   * nodes of each change find their results already in the MatchCache. Root tasks whose applicable
+   * query needs property expansion are left to be matched per change.
+   */
+  public void matchAllRootsApplicable(
+      Collection<ChangeData> changes, Predicate<String> isFilteredRoot) {
+    try {
+      for (Task def : preloader.getRootTasks()) {
+        if (def != null
+            && def.applicable != null
+            && !def.applicable.contains("${")
+            && !isFilteredRoot.test(def.name())) {
+          try {
+            matchCache.matchAll(def.applicable, changes, def.isVisible);
+          } catch (QueryParseException | RuntimeException e) {
+            // Only an optimization, the root node will report this when it is evaluated
+          }
+        }
+      }
+    } catch (ConfigInvalidException | IOException e) {
+      // The root nodes will report this when they are evaluated
+    }
+  }
+
   protected class NodeList {
     protected NodeList parent = null;
-    protected Collection<String> path;
-    protected Collection<String> duplicateKeys;
-    protected Map<TaskKey, Node> cachedNodeByTask = new HashMap<>();
+    protected Ancestors<NodeKey> path;
+    protected Ancestors<String> duplicateKeys;
+    /** Only allocated for nodes with subnodes which need to be reloaded for every change. */
+    protected Map<TaskKey, Node> cachedNodeByTask;
     protected List<Node> cachedNodes;
 
     protected List<Node> getSubNodes()
@@ -210,7 +290,7 @@ public class TaskTree {
       protected Node createFromPreloaded(Task def, NodeFactory nodeFactory) {
         if (def != null) {
           try {
-            Node node = cachedNodeByTask.get(def.key());
+            Node node = cachedNodeByTask == null ? null : cachedNodeByTask.get(def.key());
             boolean isRefreshNeeded = node != null;
             if (node == null) {
               node = nodeFactory.create(NodeList.this, def);
@@ -235,6 +315,33 @@ public class TaskTree {
     }
   }
 
+  /** The root nodes of the changes of a branch, without those inapplicable to the branch. */
+  protected class BranchRoot extends NodeList {
+    protected final BranchNameKey branch;
+
+    protected BranchRoot(BranchNameKey branch) {
+      this.branch = branch;
+    }
+
+    @Override
+    protected List<Node> loadSubNodes()
+        throws ConfigInvalidException, IOException, StorageException {
+      SubNodeFactory factory = new SubNodeFactory();
+      List<Node> nodes = new ArrayList<>();
+      for (Task def : preloader.getRootTasks()) {
+        // names check keeps duplicate root names invalid even when one of them is skipped
+        if (def != null && isInapplicableToBranch(def, branch) && factory.names.add(def.name())) {
+          if (statistics != null) {
+            statistics.rootsSkippedByBranch++;
+          }
+          continue;
+        }
+        nodes.add(factory.createFromPreloaded(def));
+      }
+      return nodes;
+    }
+  }
+
   public class Node extends NodeList {
     public class Invalid extends Node {
       @Override
@@ -267,8 +374,8 @@ public class TaskTree {
       refreshTask();
     }
 
-    public String key() {
-      return String.valueOf(getChangeData().getId().get()) + TaskConfig.SEP + taskKey;
+    public NodeKey key() {
+      return NodeKey.create(getChangeData().getId(), taskKey);
     }
 
     public List<Node> getSubNodes() throws IOException, StorageException, ConfigInvalidException {
@@ -286,7 +393,11 @@ public class TaskTree {
             task.isVisible);
       } else {
         hasUnfilterableSubNodes = true;
-        cachedNodeByTask.clear();
+        if (cachedNodeByTask == null) {
+          cachedNodeByTask = new HashMap<>();
+        } else {
+          cachedNodeByTask.clear();
+        }
         nodes.stream()
             .filter(n -> !(n instanceof Invalid) && !n.isChange())
             .forEach(n -> cachedNodeByTask.put(n.task.key(), n));
@@ -315,10 +426,9 @@ public class TaskTree {
     subNode refreshing can wait until they are fetched since they may
     not be needed. */
     public void refreshTask() {
-      this.path = new LinkedList<>(parent.path);
-      String key = key();
-      isDuplicate = path.contains(key);
-      path.add(key);
+      NodeKey key = key();
+      isDuplicate = parent.path.contains(key);
+      this.path = parent.path.add(key);
 
       if (statistics != null) {
         properties.setStatisticsConsumer(
@@ -326,10 +436,10 @@ public class TaskTree {
       }
       this.task = properties.getTask(getChangeData());
 
-      this.duplicateKeys = new LinkedList<>(parent.duplicateKeys);
+      this.duplicateKeys = parent.duplicateKeys;
       if (task.duplicateKey != null) {
         isDuplicate |= duplicateKeys.contains(task.duplicateKey);
-        duplicateKeys.add(task.duplicateKey);
+        duplicateKeys = duplicateKeys.add(task.duplicateKey);
       }
     }
 
@@ -359,6 +469,33 @@ public class TaskTree {
       return matchCache.match(getChangeData(), query, task.isVisible);
     }
 
+    /**
+     * Match the applicable query of the task. Results of queries which only depend on the branch of
+     * the change are shared server wide in the BranchApplicabilityCache.
+     */
+    public boolean matchApplicable() throws StorageException, QueryParseException {
+      String applicable = task.applicable;
+      if (!isApplicableIndexable()) {
+        return match(applicable);
+      }
+      BranchNameKey branch = getChangeData().change().getDest();
+      Boolean isApplicable = branchApplicabilityCache.getIfPresent(branch, applicable);
+      if (isApplicable == null) {
+        isApplicable = match(applicable);
+        branchApplicabilityCache.put(branch, applicable, isApplicable);
+      }
+      return isApplicable;
+    }
+
+    protected boolean isApplicableIndexable() throws QueryParseException {
+      String applicable = task.applicable;
+      return applicable != null
+          && !"true".equalsIgnoreCase(applicable)
+          && !properties.isApplicableRefreshRequired()
+          && predicateCache.isShareable(applicable)
+          && predicateCache.isCacheableByBranch(applicable, task.isVisible);
+    }
+
     public Boolean matchOrNull(String query) {
       return matchCache.matchOrNull(getChangeData(), query, task.isVisible);
     }
@@ -442,9 +579,11 @@ public class TaskTree {
                   addStaticTypeTasks(tasksFactory, namesFactory);
                   continue;
                 case CHANGE:
+                  hasDynamicNamesFactory = true;
                   addChangeTypeTasks(tasksFactory, namesFactory);
                   continue;
                 case PLUGIN:
+                  hasDynamicNamesFactory = true;
                   addPluginTypeTasks(tasksFactory, namesFactory);
                   continue;
               }
@@ -603,7 +742,7 @@ public class TaskTree {
           } else if (isApplicableCacheableByBranch(node)) {
             filterable++;
             try {
-              if (!node.match(node.task.applicable)) {
+              if (!node.matchApplicable()) {
                 // Correctness will not be affected if more nodes are added than necessary
                 // (i.e. if isApplicableCacheableByBranch() does not realize a Node is cacheable
                 // based on its Branch), but it is incorrect to filter out a Node now that could
@@ -635,7 +774,7 @@ public class TaskTree {
     }
   }
 
-  protected String resolveTaskFileName(String file) throws ConfigInvalidException {
+  protected static String resolveTaskFileName(String file) throws ConfigInvalidException {
     if (file == null) {
       throw new ConfigInvalidException("External file not defined");
     }
@@ -666,18 +805,36 @@ public class TaskTree {
     List<ChangeData> changeDataList = changesByNamesFactoryQuery.get(query);
     if (changeDataList == null) {
       try (StopWatch stopWatch =
-          changesByNamesFactoryQuery.createLoadingStopWatch(query, isVisible)) {
-        changeDataList =
-            changeQueryProcessorProvider
-                .get()
-                .query(changeQueryBuilderProvider.get().parse(query))
-                .entities();
+              changesByNamesFactoryQuery.createLoadingStopWatch(query, isVisible);
+          Timer0.Context ctx = metrics.namesFactoryQueryLatency.start()) {
+        changeDataList = querySharedCache(query);
       }
       changesByNamesFactoryQuery.put(query, changeDataList);
     }
     return changeDataList;
   }
 
+  protected List<ChangeData> querySharedCache(String query)
+      throws StorageException, QueryParseException {
+    List<Change> changes = changeQueryCache.getIfPresent(query, user);
+    if (changes != null) {
+      if (statistics != null) {
+        statistics.sharedChangeQueryCacheHits++;
+      }
+      return changes.stream().map(changeDataFactory::create).collect(toList());
+    }
+    if (statistics != null) {
+      statistics.sharedChangeQueryCacheMisses++;
+    }
+    List<ChangeData> changeDataList =
+        changeQueryProcessorProvider
+            .get()
+            .query(changeQueryBuilderProvider.get().parse(query))
+            .entities();
+    changeQueryCache.put(query, user, changeDataList);
+    return changeDataList;
+  }
+
   public void initStatistics(int summaryCount) {
     statistics = new Statistics();
     statistics.summaryCount = summaryCount;
@@ -0,0 +1,170 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.cli;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.common.PluginDefinedInfo;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.index.query.QueryResult;
+import com.google.gerrit.server.OutputFormat;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder;
+import com.google.gerrit.server.query.change.ChangeQueryProcessor;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.googlesource.gerrit.plugins.task.Modules;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskAttribute;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskPluginAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Stream the tasks of the changes matching a query, one JSON line per change.
+ *
+ * <p>Changes are queried and evaluated a page at a time, and every page is evaluated with a new
+ * TaskPluginDefinedInfoFactory so that neither the task attributes nor the per request caches of
+ * a page are held on to once the page has been written.
+ */
+@CommandMetaData(
+    name = "stream",
+    description = "Stream the tasks of the changes matching a query as JSON lines")
+public class StreamCommand extends SshCommand {
+  public static class ChangeTasks {
+    public int change;
+    public String project;
+    public List<TaskAttribute> roots;
+  }
+
+  @Option(name = "--page-size", usage = "number of changes to evaluate before writing them")
+  protected int pageSize = 100;
+
+  @Option(
+      name = "--only",
+      metaVar = "ROOT",
+      usage =
+          "Evaluate tasks under this task only. Only root task names are supported."
+              + " This option can be provided multiple times.")
+  protected void addOnly(String root) {
+    options.includedRoots.add(root);
+  }
+
+  @Option(name = "--all", usage = "Include all visible tasks in the output")
+  protected void setAll(boolean all) {
+    options.all = all;
+  }
+
+  @Option(
+      name = "--invalid",
+      usage = "Include only invalid tasks and the tasks referencing them in the output")
+  protected void setInvalid(boolean invalid) {
+    options.onlyInvalid = invalid;
+  }
+
+  @Option(name = "--include-paths", usage = "Include absolute path to each task")
+  protected void setIncludePaths(boolean includePaths) {
+    options.includePaths = includePaths;
+  }
+
+  @Option(
+      name = "--summary",
+      usage =
+          "Include only the status of each root task and the number of tasks of each status"
+              + " under it in the output")
+  protected void setSummary(boolean summary) {
+    options.summary = summary;
+  }
+
+  @Option(
+      name = "--expand-failed",
+      usage = "Evaluate and count the subtasks of failed tasks in summaries")
+  protected void setExpandFailed(boolean expandFailed) {
+    options.expandFailed = expandFailed;
+  }
+
+  @Option(name = "--evaluation-time", usage = "Include elapsed evaluation time on each task")
+  protected void setEvaluationTime(boolean evaluationTime) {
+    options.evaluationTime = evaluationTime;
+  }
+
+  @Option(
+      name = "--preview",
+      metaVar = "{CHANGE,PATCHSET}",
+      usage = "list of patch sets to preview task evaluation for")
+  protected void addPatchSet(String token) {
+    options.addPatchSet(token);
+  }
+
+  @Argument(
+      index = 0,
+      required = true,
+      multiValued = true,
+      metaVar = "QUERY",
+      usage = "query of the changes to evaluate")
+  protected List<String> query = new ArrayList<>();
+
+  @Inject protected Modules.MyOptions options;
+  @Inject protected Provider<TaskPluginDefinedInfoFactory> taskPluginDefinedInfoFactoryProvider;
+  @Inject protected Provider<ChangeQueryBuilder> changeQueryBuilderProvider;
+  @Inject protected Provider<ChangeQueryProcessor> changeQueryProcessorProvider;
+
+  @Override
+  protected void run() throws UnloggedFailure {
+    if (!options.all && !options.onlyInvalid) {
+      options.onlyApplicable = true;
+    }
+    if (pageSize < 1) {
+      throw die("--page-size must be greater than 0");
+    }
+    Gson gson = OutputFormat.JSON_COMPACT.newGson();
+    String queryString = String.join(" ", query);
+    try {
+      int start = 0;
+      boolean more = true;
+      while (more) {
+        QueryResult<ChangeData> result =
+            changeQueryProcessorProvider
+                .get()
+                .setStart(start)
+                .setUserProvidedLimit(pageSize)
+                .query(changeQueryBuilderProvider.get().parse(queryString));
+        List<ChangeData> changes = result.entities();
+        Map<Change.Id, PluginDefinedInfo> infosByChange =
+            taskPluginDefinedInfoFactoryProvider.get().createPluginDefinedInfos(changes, options);
+        for (ChangeData changeData : changes) {
+          TaskPluginAttribute info = (TaskPluginAttribute) infosByChange.get(changeData.getId());
+          if (info != null) {
+            ChangeTasks changeTasks = new ChangeTasks();
+            changeTasks.change = changeData.getId().get();
+            changeTasks.project = changeData.project().get();
+            changeTasks.roots = info.roots;
+            stdout.println(gson.toJson(changeTasks));
+          }
+        }
+        stdout.flush();
+        start += changes.size();
+        more = result.more() && !changes.isEmpty();
+      }
+    } catch (QueryParseException e) {
+      throw die(e.getMessage());
+    }
+  }
+}
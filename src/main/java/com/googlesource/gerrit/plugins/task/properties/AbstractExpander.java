@@ -14,13 +14,12 @@
 
 package com.googlesource.gerrit.plugins.task.properties;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -45,11 +44,21 @@ public abstract class AbstractExpander {
   protected Consumer<Matcher.Statistics> statisticsConsumer;
 
   protected final Map<Class<?>, Function<?, ?>> expanderByClass = new HashMap<>();
+  protected final Function<String, String> valueForName = this::getValueForName;
+  // Shared by nested expandText() calls, each appends after and then truncates back to its mark
+  protected final StringBuilder out = new StringBuilder();
+
+  protected Function<String, Template> templateByText = Template::compile;
 
   protected AbstractExpander() {
     registerClassExpander(String.class, this::expandText);
   }
 
+  /** Use to look up already compiled Templates instead of compiling every text on every use. */
+  public void setTemplateByText(Function<String, Template> templateByText) {
+    this.templateByText = templateByText;
+  }
+
   public <T> void registerClassExpander(Class<? extends T> classType, Function<T, T> expander) {
     expanderByClass.put(classType, expander);
   }
@@ -59,67 +68,29 @@ public abstract class AbstractExpander {
   }
 
   /**
-   * Returns expanded object if property found in the Strings in the object's Fields (except the
-   * excluded ones). Returns same object if no expansions occurred.
-   */
-  public <C extends Cloneable> C expand(C object, Set<String> excludedFieldNames) {
-    return expand(new CopyOnWrite.CloneOnWrite<>(object), excludedFieldNames);
-  }
-
-  /**
-   * Returns expanded object if property found in the Strings in the object's Fields (except the
-   * excluded ones). Returns same object if no expansions occurred.
+   * Expand the String field read by getter, and set it on the copy with setter if a property was
+   * found. Returns expanded object if property found, or same object if no expansions occurred.
    */
-  public <T> T expand(T object, Function<T, T> copier, Set<String> excludedFieldNames) {
-    return expand(new CopyOnWrite<>(object, copier), excludedFieldNames);
-  }
-
-  /**
-   * Returns expanded object if property found in the Strings in the object's Fields (except the
-   * excluded ones). Returns same object if no expansions occurred.
-   */
-  public <T> T expand(CopyOnWrite<T> cow, Set<String> excludedFieldNames) {
-    for (Field field : cow.getOriginal().getClass().getFields()) {
-      if (!excludedFieldNames.contains(field.getName())) {
-        expand(cow, field);
-      }
+  public <T> T expandField(
+      CopyOnWrite<T> cow, Function<T, String> getter, BiConsumer<T, String> setter) {
+    String value = getter.apply(cow.getOriginal());
+    String expanded = expandText(value);
+    if (expanded != value) {
+      setter.accept(cow.getForWrite(), expanded);
     }
     return cow.getForRead();
   }
 
   /**
-   * Returns expanded object if property found in the fieldName Field if it is a String, or in the
-   * List's Strings if it is a List. Returns same object if no expansions occurred.
+   * Expand the List field read by getter, and set it on the copy with setter if a property was
+   * found. Returns expanded object if property found, or same object if no expansions occurred.
    */
-  public <T> T expand(CopyOnWrite<T> cow, String fieldName) {
-    try {
-      return expand(cow, cow.getOriginal().getClass().getField(fieldName));
-    } catch (NoSuchFieldException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  /**
-   * Returns expanded object if property found in the Field if it is a String, or in the List's
-   * Strings if it is a List. Returns same object if no expansions occurred.
-   */
-  public <T> T expand(CopyOnWrite<T> cow, Field field) {
-    try {
-      field.setAccessible(true);
-      Object o = field.get(cow.getOriginal());
-      if (o instanceof String) {
-        String expanded = expandText((String) o);
-        if (expanded != o) {
-          field.set(cow.getForWrite(), expanded);
-        }
-      } else if (o instanceof List) {
-        List<?> expanded = expand((List<?>) o);
-        if (expanded != o) {
-          field.set(cow.getForWrite(), expanded);
-        }
-      }
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
+  public <T, V> T expandListField(
+      CopyOnWrite<T> cow, Function<T, List<V>> getter, BiConsumer<T, List<V>> setter) {
+    List<V> value = getter.apply(cow.getOriginal());
+    List<V> expanded = expand(value);
+    if (expanded != value) {
+      setter.accept(cow.getForWrite(), expanded);
     }
     return cow.getForRead();
   }
@@ -164,12 +135,33 @@ public abstract class AbstractExpander {
     if (text == null) {
       return null;
     }
+    if (statisticsConsumer != null) {
+      return expandTextWithMatcher(text);
+    }
+    if (text.indexOf("${") < 0) {
+      return text;
+    }
+    Template template = templateByText.apply(text);
+    if (!template.hasNames()) {
+      return text;
+    }
+    int mark = out.length();
+    try {
+      template.appendTo(out, valueForName);
+      return out.substring(mark);
+    } finally {
+      out.setLength(mark);
+    }
+  }
+
+  /** Expand text by searching it with a timed Matcher, use to collect Matcher statistics. */
+  protected String expandTextWithMatcher(String text) {
     Matcher m = new Matcher(text);
     m.setStatisticsConsumer(statisticsConsumer);
     if (!m.find()) {
       return text;
     }
-    StringBuffer out = new StringBuffer();
+    StringBuilder out = new StringBuilder();
     do {
       m.appendValue(out, getValueForName(m.getName()));
     } while (m.find());
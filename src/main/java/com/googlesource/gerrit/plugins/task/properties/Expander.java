@@ -47,6 +47,13 @@ public class Expander extends AbstractExpander {
     this.loadingFunction = loadingFunction;
   }
 
+  /** Forget all the values loaded so far, use before expanding for a different change. */
+  public void clear() {
+    valueByName.clear();
+    expanding.clear();
+    out.setLength(0);
+  }
+
   /**
    * Expand all properties (${property_name} -> property_value) in the given text. Returns same
    * object if no expansions occurred.
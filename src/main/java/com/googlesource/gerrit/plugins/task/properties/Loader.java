@@ -22,7 +22,7 @@ import java.util.function.Function;
 
 public class Loader {
   protected final Task task;
-  protected final ChangeData changeData;
+  protected ChangeData changeData;
   protected final Function<String, String> inherritedMapper;
   protected Change change;
   protected boolean isInheritedPropertyLoaded;
@@ -33,6 +33,13 @@ public class Loader {
     this.inherritedMapper = inherritedMapper;
   }
 
+  /** Use to load the properties for a different change. */
+  public void reset(ChangeData changeData) {
+    this.changeData = changeData;
+    change = null;
+    isInheritedPropertyLoaded = false;
+  }
+
   public boolean isNonTaskDefinedPropertyLoaded() {
     return change != null || isInheritedPropertyLoaded;
   }
@@ -78,25 +78,40 @@ public class Matcher {
     return text.substring(nameStart, end);
   }
 
-  public void appendValue(StringBuffer buffer, String value) {
+  /** Get the text between the previous match (or the start) and the current match. */
+  public String getLiteral() {
+    return text.substring(cursor, start);
+  }
+
+  /** Move past the current match without appending anything. */
+  public void skip() {
+    cursor = end + 1;
+  }
+
+  /** Get the text after the last match. */
+  public String getTail() {
+    return text.substring(cursor);
+  }
+
+  public void appendValue(StringBuilder buffer, String value) {
     appendNanoseconds.accept((b, v) -> appendValueUntimed(b, v), buffer, value);
   }
 
-  protected void appendValueUntimed(StringBuffer buffer, String value) {
+  protected void appendValueUntimed(StringBuilder buffer, String value) {
     if (start > cursor) {
-      buffer.append(text.substring(cursor, start));
+      buffer.append(text, cursor, start);
     }
     buffer.append(value);
     cursor = end + 1;
   }
 
-  public void appendTail(StringBuffer buffer) {
+  public void appendTail(StringBuilder buffer) {
     appendNanoseconds.accept(b -> appendTailUntimed(b), buffer);
   }
 
-  protected void appendTailUntimed(StringBuffer buffer) {
+  protected void appendTailUntimed(StringBuilder buffer) {
     if (cursor < text.length()) {
-      buffer.append(text.substring(cursor));
+      buffer.append(text, cursor, text.length());
       cursor = text.length();
     }
   }
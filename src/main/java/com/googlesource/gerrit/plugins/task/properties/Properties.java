@@ -14,10 +14,8 @@
 
 package com.googlesource.gerrit.plugins.task.properties;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.googlesource.gerrit.plugins.task.ConfigSourcedValue;
-import com.googlesource.gerrit.plugins.task.TaskConfig;
 import com.googlesource.gerrit.plugins.task.TaskConfig.NamesFactory;
 import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
 import com.googlesource.gerrit.plugins.task.TaskTree;
@@ -80,7 +78,7 @@ public class Properties {
   public Properties(TaskTree.Node node, Task origTask) {
     this.node = node;
     this.origTask = origTask;
-    task = new CopyOnWrite.CloneOnWrite<>(origTask);
+    task = new CopyOnWrite<>(origTask, t -> t.config.new Task(t));
   }
 
   /** Use to expand properties specifically for Tasks. */
@@ -91,16 +89,22 @@ public class Properties {
             .enabled(statistics != null)
             .build()
             .setNanosConsumer(l -> Statistics.setNanoseconds(statistics, l))) {
-      loader = new Loader(origTask, changeData, getParentMapper());
-      expander = new Expander(n -> loader.load(n));
-      expander.registerClassExpander(
-          ConfigSourcedValue.getClassType(), getConfigSourcedValueExpander(expander));
-      expander.setStatisticsConsumer(matcherStatisticsConsumer);
+      if (loader == null) {
+        loader = new Loader(origTask, changeData, getParentMapper());
+        expander = new Expander(n -> loader.load(n));
+        expander.registerClassExpander(
+            ConfigSourcedValue.getClassType(), getConfigSourcedValueExpander(expander));
+        expander.setStatisticsConsumer(matcherStatisticsConsumer);
+        expander.setTemplateByText(origTask.config::getTemplate);
+      } else {
+        loader.reset(changeData);
+        expander.clear();
+      }
       if (isTaskRefreshRequired || init) {
-        expander.expand(task, TaskConfig.KEY_APPLICABLE);
+        expander.expandField(task, t -> t.applicable, (t, v) -> t.applicable = v);
         isApplicableRefreshRequired = loader.isNonTaskDefinedPropertyLoaded();
 
-        expander.expand(task, ImmutableSet.of(TaskConfig.KEY_APPLICABLE, TaskConfig.KEY_NAME));
+        expandTask();
 
         Map<String, String> exported = expander.expand(origTask.exported);
         if (exported != origTask.exported) {
@@ -119,6 +123,21 @@ public class Properties {
     return task.getForRead();
   }
 
+  /** Expand the text of every Task field except applicable, and except exported which is a Map. */
+  protected void expandTask() {
+    expander.expandField(task, t -> t.duplicateKey, (t, v) -> t.duplicateKey = v);
+    expander.expandField(task, t -> t.fail, (t, v) -> t.fail = v);
+    expander.expandField(task, t -> t.failHint, (t, v) -> t.failHint = v);
+    expander.expandField(task, t -> t.inProgress, (t, v) -> t.inProgress = v);
+    expander.expandField(task, t -> t.pass, (t, v) -> t.pass = v);
+    expander.expandField(task, t -> t.preloadTask, (t, v) -> t.preloadTask = v);
+    expander.expandField(task, t -> t.readyHint, (t, v) -> t.readyHint = v);
+    expander.expandListField(task, t -> t.subTasks, (t, v) -> t.subTasks = v);
+    expander.expandListField(task, t -> t.subTasksExternals, (t, v) -> t.subTasksExternals = v);
+    expander.expandListField(task, t -> t.subTasksFactories, (t, v) -> t.subTasksFactories = v);
+    expander.expandListField(task, t -> t.subTasksFiles, (t, v) -> t.subTasksFiles = v);
+  }
+
   protected Function<ConfigSourcedValue, ConfigSourcedValue> getConfigSourcedValueExpander(
       Expander expander) {
     return t -> {
@@ -161,7 +180,13 @@ public class Properties {
 
   /** Use to expand properties specifically for NamesFactories. */
   public NamesFactory getNamesFactory(NamesFactory namesFactory) {
-    return expander.expand(namesFactory, ImmutableSet.of(TaskConfig.KEY_TYPE));
+    CopyOnWrite<NamesFactory> cow =
+        new CopyOnWrite<>(namesFactory, n -> n.config.new NamesFactory(n));
+    expander.expandField(cow, n -> n.changes, (n, v) -> n.changes = v);
+    expander.expandListField(cow, n -> n.names, (n, v) -> n.names = v);
+    expander.expandField(cow, n -> n.plugin, (n, v) -> n.plugin = v);
+    expander.expandField(cow, n -> n.provider, (n, v) -> n.provider = v);
+    return expander.expandListField(cow, n -> n.args, (n, v) -> n.args = v);
   }
 
   protected Function<String, String> getParentMapper() {
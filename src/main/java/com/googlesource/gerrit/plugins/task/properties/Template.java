@@ -0,0 +1,75 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A text split once into its literal segments and the names of the properties referenced between
+ * them, so that it can be expanded repeatedly without searching the text again.
+ *
+ * <p>The text: <code>"The brown ${animal} jumped over the ${obstacle}."</code>
+ *
+ * <p>compiles to the literals: <code>"The brown ", " jumped over the ", "."</code> and the names:
+ * <code>"animal", "obstacle"</code>
+ */
+public class Template {
+  protected static final String[] NO_NAMES = new String[0];
+
+  public static Template compile(String text) {
+    Matcher m = new Matcher(text);
+    if (!m.find()) {
+      return new Template(text, new String[] {text}, NO_NAMES);
+    }
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    do {
+      literals.add(m.getLiteral());
+      names.add(m.getName());
+      m.skip();
+    } while (m.find());
+    literals.add(m.getTail());
+    return new Template(
+        text, literals.toArray(new String[literals.size()]), names.toArray(NO_NAMES));
+  }
+
+  protected final String text;
+  protected final String[] literals; // Always one more literal than names
+  protected final String[] names;
+
+  protected Template(String text, String[] literals, String[] names) {
+    this.text = text;
+    this.literals = literals;
+    this.names = names;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public boolean hasNames() {
+    return names.length > 0;
+  }
+
+  /** Append the expanded text to out, getting the value of each property from valueForName. */
+  public void appendTo(StringBuilder out, Function<String, String> valueForName) {
+    for (int i = 0; i < names.length; i++) {
+      out.append(literals[i]).append(valueForName.apply(names[i]));
+    }
+    out.append(literals[names.length]);
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.rest;
+
+import static java.util.stream.Collectors.joining;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.common.PluginDefinedInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.index.query.QueryResult;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder;
+import com.google.gerrit.server.query.change.ChangeQueryProcessor;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.googlesource.gerrit.plugins.task.Modules;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.Status;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskAttribute;
+import com.googlesource.gerrit.plugins.task.TaskPluginDefinedInfoFactory.TaskPluginAttribute;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Summarize the applicable tasks of many changes at once.
+ *
+ * <p>All the changes are evaluated by a single TaskPluginDefinedInfoFactory, so they share the
+ * same task tree, predicates and match results. The changes are evaluated in summary mode, so only
+ * the status of the root tasks and the number of tasks of each status are returned for each
+ * change.
+ */
+public class GetStatuses implements RestReadView<ConfigResource> {
+  public static class ChangeStatuses {
+    public int change;
+    public String project;
+    public Map<Status, Integer> counts = new EnumMap<>(Status.class);
+    public List<RootStatus> roots = new ArrayList<>();
+    /** Only set on the last change, when more changes matched than the limit allowed. */
+    public Boolean _moreChanges;
+  }
+
+  public static class RootStatus {
+    public String name;
+    public Status status;
+  }
+
+  @Option(
+      name = "--change",
+      aliases = {"-c"},
+      metaVar = "CHANGE",
+      usage = "number of a change to summarize the tasks of, may be provided multiple times")
+  protected List<Integer> changes = new ArrayList<>();
+
+  @Option(
+      name = "--query",
+      aliases = {"-q"},
+      metaVar = "QUERY",
+      usage = "query of the changes to summarize the tasks of")
+  protected String query;
+
+  @Option(name = "--limit", metaVar = "CNT", usage = "maximum number of changes to summarize")
+  protected int limit;
+
+  @Option(
+      name = "--only",
+      metaVar = "ROOT",
+      usage =
+          "Summarize tasks under this task only. Only root task names are supported."
+              + " This option can be provided multiple times.")
+  protected void addOnly(String root) {
+    options.includedRoots.add(root);
+  }
+
+  @Option(name = "--expand-failed", usage = "Evaluate and count the subtasks of failed tasks")
+  protected void setExpandFailed(boolean expandFailed) {
+    options.expandFailed = expandFailed;
+  }
+
+  protected final Modules.MyOptions options;
+  protected final Provider<TaskPluginDefinedInfoFactory> taskPluginDefinedInfoFactoryProvider;
+  protected final Provider<ChangeQueryBuilder> changeQueryBuilderProvider;
+  protected final Provider<ChangeQueryProcessor> changeQueryProcessorProvider;
+
+  @Inject
+  public GetStatuses(
+      Modules.MyOptions options,
+      Provider<TaskPluginDefinedInfoFactory> taskPluginDefinedInfoFactoryProvider,
+      Provider<ChangeQueryBuilder> changeQueryBuilderProvider,
+      Provider<ChangeQueryProcessor> changeQueryProcessorProvider) {
+    this.options = options;
+    this.taskPluginDefinedInfoFactoryProvider = taskPluginDefinedInfoFactoryProvider;
+    this.changeQueryBuilderProvider = changeQueryBuilderProvider;
+    this.changeQueryProcessorProvider = changeQueryProcessorProvider;
+  }
+
+  @Override
+  public Response<List<ChangeStatuses>> apply(ConfigResource resource) throws Exception {
+    String queryString = getQueryString();
+    List<ChangeData> changeDatas;
+    boolean hasMore;
+    try {
+      ChangeQueryProcessor queryProcessor = changeQueryProcessorProvider.get();
+      if (limit > 0) {
+        queryProcessor.setUserProvidedLimit(limit);
+      }
+      QueryResult<ChangeData> result =
+          queryProcessor.query(changeQueryBuilderProvider.get().parse(queryString));
+      changeDatas = result.entities();
+      hasMore = result.more();
+    } catch (QueryParseException e) {
+      throw new BadRequestException(e.getMessage(), e);
+    }
+
+    options.summary = true;
+    Map<Change.Id, PluginDefinedInfo> infosByChange =
+        taskPluginDefinedInfoFactoryProvider.get().createPluginDefinedInfos(changeDatas, options);
+    List<ChangeStatuses> statuses = new ArrayList<>(changeDatas.size());
+    for (ChangeData changeData : changeDatas) {
+      ChangeStatuses changeStatuses = new ChangeStatuses();
+      changeStatuses.change = changeData.getId().get();
+      changeStatuses.project = changeData.project().get();
+      TaskPluginAttribute info = (TaskPluginAttribute) infosByChange.get(changeData.getId());
+      if (info != null) {
+        for (TaskAttribute root : info.roots) {
+          RootStatus rootStatus = new RootStatus();
+          rootStatus.name = root.name;
+          rootStatus.status = root.status;
+          changeStatuses.roots.add(rootStatus);
+          if (root.counts != null) {
+            root.counts.forEach((s, c) -> changeStatuses.counts.merge(s, c, Integer::sum));
+          } else if (root.status != null) {
+            changeStatuses.counts.merge(root.status, 1, Integer::sum);
+          }
+        }
+      }
+      statuses.add(changeStatuses);
+    }
+    if (hasMore && !statuses.isEmpty()) {
+      statuses.get(statuses.size() - 1)._moreChanges = true;
+    }
+    return Response.ok(statuses);
+  }
+
+  protected String getQueryString() throws BadRequestException {
+    if (changes.isEmpty() && query == null) {
+      throw new BadRequestException("--change or --query is required");
+    }
+    List<String> terms = new ArrayList<>();
+    if (!changes.isEmpty()) {
+      terms.add("(" + changes.stream().map(c -> "change:" + c).collect(joining(" OR ")) + ")");
+    }
+    if (query != null) {
+      terms.add("(" + query + ")");
+    }
+    return String.join(" ", terms);
+  }
+}
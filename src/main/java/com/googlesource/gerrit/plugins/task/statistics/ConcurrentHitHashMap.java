@@ -0,0 +1,199 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.task.statistics;
+
+import static java.util.stream.Collectors.toList;
+
+import com.googlesource.gerrit.plugins.task.util.TopKeyMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread safe HitHashMap, which may be shared by the threads evaluating tasks.
+ *
+ * <p>The hits and loading times are summed in LongAdders, so that the threads do not contend on
+ * them, and the Statistics are only built from them by getStatistics(). Like in the HitHashMap,
+ * computeIfAbsent() does not hold any lock while computing a value, so that the computation may use
+ * this map too, but two threads missing the same key may both compute it, and only the first value
+ * put is kept and returned.
+ */
+public class ConcurrentHitHashMap<K, V> extends ConcurrentHashMap<K, V>
+    implements StatisticsMap<K, V> {
+  public static final long serialVersionUID = 1;
+
+  protected final LongAdder hits = new LongAdder();
+  protected final LongAdder sumNanosecondsLoading = new LongAdder();
+  protected volatile boolean isLoadingTimed;
+  /** Set when statistics are enabled. */
+  protected volatile TopKeyMap<K> topNanosecondsLoadingKeys;
+
+  public ConcurrentHitHashMap() {}
+
+  @Override
+  public V get(Object key) {
+    V v = super.get(key);
+    if (topNanosecondsLoadingKeys != null && v != null) {
+      hits.increment();
+    }
+    return v;
+  }
+
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    V v = get(key);
+    if (v == null) {
+      v = mappingFunction.apply(key);
+      if (v != null) {
+        v = putIfAbsentOrGet(key, v);
+      }
+    }
+    return v;
+  }
+
+  @Override
+  @SuppressWarnings("try")
+  public V computeIfAbsentTimed(
+      K key, Function<? super K, ? extends V> mappingFunction, boolean isVisible) {
+    V v = get(key);
+    if (v == null) {
+      try (StopWatch stopWatch = createLoadingStopWatch(key, isVisible)) {
+        v = mappingFunction.apply(key);
+      }
+      if (v != null) {
+        v = putIfAbsentOrGet(key, v);
+      }
+    }
+    return v;
+  }
+
+  protected V putIfAbsentOrGet(K key, V value) {
+    V previous = putIfAbsent(key, value);
+    return previous == null ? value : previous;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    return super.put(key, ensureValueStatistics(value));
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> m) {
+    m.entrySet().stream().forEach(e -> put(e.getKey(), e.getValue()));
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    return super.putIfAbsent(key, ensureValueStatistics(value));
+  }
+
+  protected V ensureValueStatistics(V value) {
+    TopKeyMap<K> top = topNanosecondsLoadingKeys;
+    if (top != null && value instanceof TracksStatistics) {
+      ((TracksStatistics) value).ensureStatistics(top.size());
+    }
+    return value;
+  }
+
+  @Override
+  public V computeIfPresent(
+      K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    return super.computeIfPresent(
+        key, (k, v) -> ensureValueStatistics(remappingFunction.apply(k, v)));
+  }
+
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    return super.compute(key, (k, v) -> ensureValueStatistics(remappingFunction.apply(k, v)));
+  }
+
+  @Override
+  public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    return super.merge(
+        key,
+        ensureValueStatistics(value),
+        (old, v) -> ensureValueStatistics(remappingFunction.apply(old, v)));
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    return super.replace(key, ensureValueStatistics(value));
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    return super.replace(key, oldValue, ensureValueStatistics(newValue));
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+    super.replaceAll((k, v) -> ensureValueStatistics(function.apply(k, v)));
+  }
+
+  @Override
+  public synchronized void initStatistics(int summaryCount) {
+    hits.reset();
+    sumNanosecondsLoading.reset();
+    isLoadingTimed = false;
+    topNanosecondsLoadingKeys = new TopKeyMap<>(summaryCount);
+  }
+
+  @Override
+  public synchronized void ensureStatistics(int summaryCount) {
+    if (topNanosecondsLoadingKeys == null) {
+      initStatistics(summaryCount);
+    }
+  }
+
+  @Override
+  public StopWatch createLoadingStopWatch(K key, boolean isVisible) {
+    TopKeyMap<K> top = topNanosecondsLoadingKeys;
+    if (top == null) {
+      return StopWatch.DISABLED;
+    }
+    isLoadingTimed = true;
+    return new StopWatch.Enabled()
+        .setNanosConsumer(
+            ns -> {
+              sumNanosecondsLoading.add(ns);
+              top.addIfTop(ns, isVisible ? key : null);
+            });
+  }
+
+  @Override
+  public Object getStatistics() {
+    return fillStatistics(new HitHashMap.Statistics<>());
+  }
+
+  protected <S extends HitHashMap.Statistics<K>> S fillStatistics(S statistics) {
+    statistics.hits = hits.sum();
+    statistics.size = size();
+    if (isLoadingTimed) {
+      statistics.sumNanosecondsLoading = sumNanosecondsLoading.sum();
+    }
+    statistics.topNanosecondsLoadingKeys = topNanosecondsLoadingKeys;
+    List<Object> elementStatistics =
+        values().stream()
+            .filter(e -> e instanceof TracksStatistics)
+            .map(e -> ((TracksStatistics) e).getStatistics())
+            .collect(toList());
+    if (!elementStatistics.isEmpty()) {
+      statistics.elements = elementStatistics;
+    }
+    return statistics;
+  }
+}
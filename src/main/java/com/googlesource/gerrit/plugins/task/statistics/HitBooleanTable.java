@@ -14,14 +14,16 @@
 
 package com.googlesource.gerrit.plugins.task.statistics;
 
-import com.google.gerrit.common.BooleanTable;
+import com.google.gerrit.common.IntColumnBooleanTable;
 import com.googlesource.gerrit.plugins.task.util.TopKeyMap;
+import java.util.Arrays;
 
 /**
- * A space efficient Table for Booleans. This Table takes advantage of the fact that the values
- * stored in it are all Booleans and uses BitSets to make this very space efficient.
+ * A space efficient Table for Booleans with int columns. This Table takes advantage of the fact
+ * that the values stored in it are all Booleans and uses bit arrays to make this very space
+ * efficient.
  */
-public class HitBooleanTable<R, C> extends BooleanTable<R, C> implements TracksStatistics {
+public class HitBooleanTable<R> extends IntColumnBooleanTable<R> implements TracksStatistics {
   public static class Statistics<V> {
     public long hits;
     public long misses;
@@ -32,11 +34,11 @@ public class HitBooleanTable<R, C> extends BooleanTable<R, C> implements TracksS
     public TopKeyMap<V> topNanosecondsLoadingKeys;
   }
 
-  protected Statistics<TopKeyMap.TableKeyValue<R, C>> statistics;
+  protected Statistics<TopKeyMap.TableKeyValue<R, Integer>> statistics;
 
   @Override
-  public Boolean get(R r, C c) {
-    Boolean value = super.get(r, c);
+  public Boolean get(int rowId, int c) {
+    Boolean value = super.get(rowId, c);
     if (statistics != null) {
       if (value != null) {
         statistics.hits++;
@@ -47,7 +49,7 @@ public class HitBooleanTable<R, C> extends BooleanTable<R, C> implements TracksS
     return value;
   }
 
-  public StopWatch createLoadingStopWatch(R row, C column, boolean isVisible) {
+  public StopWatch createLoadingStopWatch(R row, int column, boolean isVisible) {
     if (statistics == null) {
       return StopWatch.DISABLED;
     }
@@ -61,9 +63,9 @@ public class HitBooleanTable<R, C> extends BooleanTable<R, C> implements TracksS
                     updateTopLoadingTimes(ns, row, column, isVisible));
   }
 
-  public long updateTopLoadingTimes(long nanos, R row, C column, boolean isVisible) {
+  public long updateTopLoadingTimes(long nanos, R row, int column, boolean isVisible) {
     statistics.topNanosecondsLoadingKeys.addIfTop(
-        nanos, isVisible ? new TopKeyMap.TableKeyValue<R, C>(row, column) : null);
+        nanos, isVisible ? new TopKeyMap.TableKeyValue<R, Integer>(row, column) : null);
     return nanos;
   }
 
@@ -82,13 +84,10 @@ public class HitBooleanTable<R, C> extends BooleanTable<R, C> implements TracksS
 
   @Override
   public Object getStatistics() {
-    statistics.numberOfRows = rowByRow.size();
-    statistics.numberOfColumns = positionByColumn.size();
+    statistics.numberOfRows = numberOfRows;
+    statistics.numberOfColumns = numberOfColumns;
     statistics.size =
-        rowByRow.values().stream()
-            .map(r -> (long) r.hasValues.size() + (long) r.values.size())
-            .mapToLong(Long::longValue)
-            .sum();
+        Arrays.stream(rows, 0, numberOfRows).mapToLong(row -> (long) row.length * Long.SIZE).sum();
     return statistics;
   }
 }
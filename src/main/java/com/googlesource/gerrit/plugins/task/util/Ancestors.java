@@ -0,0 +1,97 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable list of the keys of the ancestors of a tree node.
+ *
+ * <p>Each entry only points to the entry of its parent, so the entries of the ancestors are shared
+ * by all their descendants, and adding a key allocates a single entry instead of copying the list.
+ *
+ * <p>To keep contains() constant time on deep trees, each entry has a 64 bit mask with one bit set
+ * for the hash of each key up to the root, which answers most misses without walking the list, and
+ * every CHECKPOINT_INTERVAL entries one entry has a set of all the keys up to the root, so a walk
+ * never visits more than CHECKPOINT_INTERVAL entries.
+ */
+public class Ancestors<K> {
+  protected static final int CHECKPOINT_INTERVAL = 32;
+  protected static final Ancestors<?> EMPTY = new Ancestors<>();
+
+  @SuppressWarnings("unchecked")
+  public static <K> Ancestors<K> empty() {
+    return (Ancestors<K>) EMPTY;
+  }
+
+  protected final Ancestors<K> parent;
+  protected final K key;
+  protected final int depth;
+  protected final long mask;
+  /** All the keys up to the root, only set on every CHECKPOINT_INTERVAL entries. */
+  protected final Set<K> checkpoint;
+
+  protected Ancestors() {
+    parent = null;
+    key = null;
+    depth = 0;
+    mask = 0;
+    checkpoint = null;
+  }
+
+  protected Ancestors(Ancestors<K> parent, K key) {
+    this.parent = parent;
+    this.key = key;
+    depth = parent.depth + 1;
+    mask = parent.mask | bit(key.hashCode());
+    checkpoint = depth % CHECKPOINT_INTERVAL == 0 ? createCheckpoint() : null;
+  }
+
+  public Ancestors<K> add(K key) {
+    return new Ancestors<>(this, key);
+  }
+
+  public boolean contains(K key) {
+    if ((mask & bit(key.hashCode())) == 0) {
+      return false;
+    }
+    for (Ancestors<K> a = this; a != EMPTY; a = a.parent) {
+      if (a.checkpoint != null) {
+        return a.checkpoint.contains(key);
+      }
+      if (a.key.equals(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected Set<K> createCheckpoint() {
+    Ancestors<K> a = this;
+    Set<K> keys = new HashSet<>();
+    for (; a != EMPTY && a.checkpoint == null; a = a.parent) {
+      keys.add(a.key);
+    }
+    if (a != EMPTY) {
+      keys.addAll(a.checkpoint);
+    }
+    return keys;
+  }
+
+  protected static long bit(int hash) {
+    return 1L << ((hash ^ (hash >>> 16)) & 63);
+  }
+}
@@ -14,21 +14,22 @@
 
 package com.googlesource.gerrit.plugins.task.util;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * A TopKeyMap is a lightweight limited size (default 5) map with 'long' keys designed to store only
  * the elements with the top five largest keys.
  *
  * <p>A TopKeyMap is array based and has O(n) insertion time. Despite not having O(1) insertion
  * times, it should likely be much faster than a hash based map for small n sizes. It also is more
- * memory efficient than a hash based map, although both are likely O(n) in space usage. The
- * TopKeyMap allocates all of its entries up front so it does not change its memory utilization at
- * all, and it does not have to create or free any Objects during its post constructor lifespan.
+ * memory efficient than a hash based map, although both are likely O(n) in space usage.
  *
  * <p>While a TopKeyMap currently only uses 'long's as keys, it is possible to easiy upgrade this
  * collection to use any type of Comparable key.
  *
- * <p>Although not currently thread safe, due to the simplicity of the data structures used, and the
- * insertion approach, it is easy to make a TopKeyMap efficiently thread safe.
+ * <p>A TopKeyMap is thread safe and lock free. Its entries are immutable and an insertion replaces
+ * the whole array with a compare and set, retrying if another insertion won the race. Most keys are
+ * smaller than the smallest top key, and those are rejected without any allocation or write.
  */
 public class TopKeyMap<V> {
   /**
@@ -45,17 +46,21 @@ public class TopKeyMap<V> {
     }
   }
 
-  protected class Entry {
-    public long key;
-    public V value;
+  protected static class Entry<V> {
+    public final long key;
+    public final V value;
 
-    protected void set(long key, V value) {
+    protected Entry(long key, V value) {
       this.key = key;
       this.value = value;
     }
   }
 
-  protected Entry[] entries;
+  @SuppressWarnings("rawtypes")
+  protected static final AtomicReferenceFieldUpdater<TopKeyMap, Entry[]> ENTRIES =
+      AtomicReferenceFieldUpdater.newUpdater(TopKeyMap.class, Entry[].class, "entries");
+
+  protected volatile Entry<V>[] entries;
 
   public TopKeyMap() {
     this(5);
@@ -63,27 +68,28 @@ public class TopKeyMap<V> {
 
   @SuppressWarnings("unchecked")
   public TopKeyMap(int length) {
-    entries = (Entry[]) new Object[length];
+    entries = new Entry[length];
+    Entry<V> empty = new Entry<>(0, null);
     for (int i = 0; i < entries.length; i++) {
-      entries[i] = new Entry();
+      entries[i] = empty;
     }
   }
 
   public void addIfTop(long key, V value) {
-    addIfTop(0, key, value);
-  }
-
-  protected void addIfTop(int i, long key, V value) {
-    if (entries[entries.length - 1].key < key) {
-      for (; i < entries.length; i++) {
-        Entry e = entries[i];
-        if (e.key < key) {
-          long eKValue = e.key;
-          V eValue = e.value;
-          e.set(key, value);
-          addIfTop(i + 1, eKValue, eValue);
-          return;
-        }
+    while (true) {
+      Entry<V>[] current = entries;
+      if (current.length == 0 || current[current.length - 1].key >= key) {
+        return;
+      }
+      int i = 0;
+      while (current[i].key >= key) {
+        i++;
+      }
+      Entry<V>[] updated = current.clone();
+      System.arraycopy(current, i, updated, i + 1, current.length - i - 1);
+      updated[i] = new Entry<>(key, value);
+      if (ENTRIES.compareAndSet(this, current, updated)) {
+        return;
       }
     }
   }
@@ -0,0 +1,76 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.common;
+
+import junit.framework.TestCase;
+
+public class IntColumnBooleanTableTest extends TestCase {
+
+  public void testNulls() {
+    IntColumnBooleanTable<String> cbt = new IntColumnBooleanTable<>();
+    assertNull(cbt.get("r1", 1));
+    assertNull(cbt.get("r0", 0));
+
+    cbt.put("r1", 0, true);
+    assertNull(cbt.get("r1", 1));
+    assertNull(cbt.get("r0", 0));
+
+    cbt.put("r0", 1, true);
+    assertNull(cbt.get("r1", 1));
+    assertNull(cbt.get("r0", 0));
+  }
+
+  public void testRowColumnOverride() {
+    IntColumnBooleanTable<String> cbt = new IntColumnBooleanTable<>();
+    cbt.put("r1", 1, true);
+    assertTrue(cbt.get("r1", 1));
+
+    cbt.put("r1", 1, false);
+    assertFalse(cbt.get("r1", 1));
+
+    cbt.put("r1", 1, null);
+    assertNull(cbt.get("r1", 1));
+  }
+
+  public void testRowIds() {
+    IntColumnBooleanTable<String> cbt = new IntColumnBooleanTable<>();
+    assertEquals(IntColumnBooleanTable.NO_ROW, cbt.getRowId("r1"));
+    assertNull(cbt.get(IntColumnBooleanTable.NO_ROW, 1));
+
+    int r1 = cbt.getOrCreateRowId("r1");
+    assertEquals(r1, cbt.getRowId("r1"));
+    cbt.put(r1, 1, true);
+    assertTrue(cbt.get("r1", 1));
+  }
+
+  public void testManyRowsAndColumns() {
+    IntColumnBooleanTable<String> cbt = new IntColumnBooleanTable<>();
+    for (int r = 0; r < 20; r++) {
+      for (int c = 0; c < 1000; c += r + 1) {
+        cbt.put("r" + r, c * 31, (c + r) % 2 == 0);
+      }
+    }
+    for (int r = 0; r < 20; r++) {
+      for (int c = 0; c < 1000; c++) {
+        Boolean value = cbt.get("r" + r, c * 31);
+        if (c % (r + 1) == 0) {
+          assertEquals(Boolean.valueOf((c + r) % 2 == 0), value);
+        } else {
+          assertNull(value);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import junit.framework.TestCase;
+
+public class PredicateCacheTest extends TestCase {
+
+  public void testNormalizeUnchanged() {
+    String query = "status:open project:x";
+    assertSame(query, PredicateCache.normalize(query));
+  }
+
+  public void testNormalizeWhitespace() {
+    assertEquals(
+        "status:open project:x", PredicateCache.normalize("  status:open \t\n project:x "));
+  }
+
+  public void testNormalizeSameLengthWhitespace() {
+    assertEquals("status:open project:x", PredicateCache.normalize("status:open\tproject:x"));
+  }
+
+  public void testNormalizeKeepsQuotedWhitespace() {
+    assertEquals(
+        "message:\"a  b\" topic:{c  d} x",
+        PredicateCache.normalize("message:\"a  b\"   topic:{c  d}  x"));
+  }
+}
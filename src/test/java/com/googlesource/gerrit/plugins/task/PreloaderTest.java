@@ -0,0 +1,97 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import com.google.gerrit.entities.Project;
+import com.googlesource.gerrit.plugins.task.TaskConfig.Task;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.Config;
+
+public class PreloaderTest extends TestCase {
+  public static FileKey FILE =
+      FileKey.create(Project.nameKey("All-Projects"), "refs/meta/config", "task.config");
+
+  public void testUnsetValuesArePreloaded() {
+    TaskConfig cfg = createTaskConfig();
+    Task preloaded = Preloader.preloadFrom(getTask(cfg, "child"), getTask(cfg, "parent"));
+
+    assertEquals("is:open", preloaded.applicable);
+    assertEquals("parent-hint", preloaded.readyHint);
+  }
+
+  public void testSetValuesOverridePreloaded() {
+    TaskConfig cfg = createTaskConfig();
+    Task preloaded = Preloader.preloadFrom(getTask(cfg, "child"), getTask(cfg, "parent"));
+
+    assertEquals("is:merged", preloaded.pass);
+    assertEquals("parent", preloaded.preloadTask);
+  }
+
+  public void testListsAreExtended() {
+    TaskConfig cfg = createTaskConfig();
+    Task preloaded = Preloader.preloadFrom(getTask(cfg, "child"), getTask(cfg, "parent"));
+
+    List<ConfigSourcedValue> subTasks = preloaded.subTasks;
+    assertEquals(2, subTasks.size());
+    assertEquals("parent-subtask", subTasks.get(0).value());
+    assertEquals("child-subtask", subTasks.get(1).value());
+  }
+
+  public void testMapsAreOverlaid() {
+    TaskConfig cfg = createTaskConfig();
+    Task preloaded = Preloader.preloadFrom(getTask(cfg, "child"), getTask(cfg, "parent"));
+
+    Map<String, String> properties = preloaded.properties;
+    assertEquals(2, properties.size());
+    assertEquals("parent-only", properties.get("only"));
+    assertEquals("child-shared", properties.get("shared"));
+  }
+
+  public void testIdentityIsKept() {
+    TaskConfig cfg = createTaskConfig();
+    Task child = getTask(cfg, "child");
+    Task preloaded = Preloader.preloadFrom(child, getTask(cfg, "parent"));
+
+    assertEquals(child.key(), preloaded.key());
+    assertEquals(child.subSection, preloaded.subSection);
+    assertSame(cfg, preloaded.config);
+    assertTrue(preloaded.isVisible);
+    assertFalse(preloaded.isMasqueraded);
+  }
+
+  protected static Task getTask(TaskConfig cfg, String name) {
+    return cfg.getOptionalTask(name).get();
+  }
+
+  protected static TaskConfig createTaskConfig() {
+    Config config = new Config();
+    config.setString("task", "parent", "applicable", "is:open");
+    config.setString("task", "parent", "pass", "is:abandoned");
+    config.setString("task", "parent", "ready-hint", "parent-hint");
+    config.setString("task", "parent", "subtask", "parent-subtask");
+    config.setString("task", "parent", "set-only", "parent-only");
+    config.setString("task", "parent", "set-shared", "parent-shared");
+    config.setString("task", "child", "preload-task", "parent");
+    config.setString("task", "child", "pass", "is:merged");
+    config.setString("task", "child", "subtask", "child-subtask");
+    config.setString("task", "child", "set-shared", "child-shared");
+
+    TaskConfig cfg = new TaskConfig(FILE, true, false);
+    cfg.loadFrom(config);
+    return cfg;
+  }
+}
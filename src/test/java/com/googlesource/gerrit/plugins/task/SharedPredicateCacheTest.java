@@ -0,0 +1,72 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task;
+
+import junit.framework.TestCase;
+
+public class SharedPredicateCacheTest extends TestCase {
+
+  public void testUserIndependentQueries() {
+    assertShareable("status:open");
+    assertShareable("project:foo branch:master");
+    assertShareable("ref:refs/heads/master AND -is:wip");
+    assertShareable("(status:merged OR status:abandoned) NOT topic:x");
+    assertShareable("label:Code-Review=+2 label:Verified+1,owner");
+    assertShareable("label:Code-Review=+2,non_uploader label:Verified=+1,count>=2");
+    assertShareable("file:^a/.* message:\"a owner:self b\" topic:{c d}");
+    assertShareable("is:open is:merged is:closed is:private");
+  }
+
+  public void testUserBoundOperators() {
+    assertNotShareable("owner:self");
+    assertNotShareable("is:owner");
+    assertNotShareable("is:reviewer");
+    assertNotShareable("is:cc");
+    assertNotShareable("is:author");
+    assertNotShareable("is:uploader");
+    assertNotShareable("is:ignored");
+    assertNotShareable("is:starred");
+    assertNotShareable("is:watched");
+    assertNotShareable("is:attention");
+    assertNotShareable("has:draft");
+    assertNotShareable("has:edit");
+    assertNotShareable("destination:mine");
+    assertNotShareable("query:mine");
+    assertNotShareable("reviewer:someone");
+    assertNotShareable("visibleto:someone");
+    assertNotShareable("label:Code-Review=+2,user=self");
+    assertNotShareable("label:Code-Review=+2,user=someone");
+    assertNotShareable("label:Code-Review=+2,group=admins");
+    assertNotShareable("label:Code-Review=+2,self");
+    assertNotShareable("label:Code-Review=+2,jsmith");
+    assertNotShareable("label:Code-Review=+2,android_approvers");
+    assertNotShareable("label:Code-Review=+2,owner,jsmith");
+  }
+
+  public void testUnknownTerms() {
+    assertNotShareable("status:open foo");
+    assertNotShareable("status:open age:1d");
+    assertNotShareable("status:open -(is:open OR is:uploader)");
+    assertNotShareable("IS:AUTHOR");
+  }
+
+  protected static void assertShareable(String query) {
+    assertTrue(query, SharedPredicateCache.isUserIndependent(query));
+  }
+
+  protected static void assertNotShareable(String query) {
+    assertFalse(query, SharedPredicateCache.isUserIndependent(query));
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.util;
+
+import junit.framework.TestCase;
+
+public class AncestorsTest extends TestCase {
+
+  public void testEmpty() {
+    assertFalse(Ancestors.<String>empty().contains("a"));
+  }
+
+  public void testSharedParent() {
+    Ancestors<String> parent = Ancestors.<String>empty().add("a");
+    Ancestors<String> left = parent.add("b");
+    Ancestors<String> right = parent.add("c");
+
+    assertTrue(left.contains("a"));
+    assertTrue(left.contains("b"));
+    assertFalse(left.contains("c"));
+    assertTrue(right.contains("c"));
+    assertFalse(right.contains("b"));
+    assertFalse(parent.contains("b"));
+  }
+
+  public void testDeep() {
+    int depth = Ancestors.CHECKPOINT_INTERVAL * 3 + 5;
+    Ancestors<Integer> ancestors = Ancestors.empty();
+    for (int i = 0; i < depth; i++) {
+      assertFalse(ancestors.contains(i));
+      ancestors = ancestors.add(i);
+    }
+    for (int i = 0; i < depth; i++) {
+      assertTrue(ancestors.contains(i));
+    }
+    assertFalse(ancestors.contains(depth));
+    assertFalse(ancestors.contains(-1));
+  }
+
+  public void testBranchesBelowCheckpoint() {
+    Ancestors<Integer> ancestors = Ancestors.empty();
+    for (int i = 0; i < Ancestors.CHECKPOINT_INTERVAL - 1; i++) {
+      ancestors = ancestors.add(i);
+    }
+    Ancestors<Integer> left = ancestors.add(1000).add(1001);
+    Ancestors<Integer> right = ancestors.add(2000).add(2001);
+
+    assertTrue(left.contains(1000));
+    assertTrue(left.contains(0));
+    assertFalse(left.contains(2000));
+    assertTrue(right.contains(2000));
+    assertFalse(right.contains(1001));
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright (C) 2024 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.task.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class TopKeyMapTest extends TestCase {
+
+  public void testKeepsTopKeysInOrder() {
+    TopKeyMap<String> map = new TopKeyMap<>(3);
+    map.addIfTop(5, "five");
+    map.addIfTop(1, "one");
+    map.addIfTop(9, "nine");
+    map.addIfTop(7, "seven");
+    map.addIfTop(2, "two");
+
+    assertEntry(map, 0, 9, "nine");
+    assertEntry(map, 1, 7, "seven");
+    assertEntry(map, 2, 5, "five");
+  }
+
+  public void testEqualKeysKeepFirst() {
+    TopKeyMap<String> map = new TopKeyMap<>(2);
+    map.addIfTop(5, "first");
+    map.addIfTop(5, "second");
+    map.addIfTop(5, "third");
+
+    assertEntry(map, 0, 5, "first");
+    assertEntry(map, 1, 5, "second");
+  }
+
+  public void testEmpty() {
+    TopKeyMap<String> map = new TopKeyMap<>(0);
+    map.addIfTop(5, "five");
+    assertEquals(0, map.size());
+  }
+
+  public void testConcurrentAdds() throws Exception {
+    int threads = 4;
+    int perThread = 10000;
+    TopKeyMap<Long> map = new TopKeyMap<>();
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int offset = t;
+      workers.add(
+          new Thread(
+              () -> {
+                for (long k = 1; k <= perThread; k++) {
+                  long key = k * threads + offset;
+                  map.addIfTop(key, key);
+                }
+              }));
+    }
+    workers.forEach(Thread::start);
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    long max = (long) perThread * threads + threads - 1;
+    for (int i = 0; i < map.size(); i++) {
+      assertEntry(map, i, max - i, max - i);
+    }
+  }
+
+  protected static <V> void assertEntry(TopKeyMap<V> map, int i, long key, V value) {
+    assertEquals(key, map.entries[i].key);
+    assertEquals(value, map.entries[i].value);
+  }
+}
@@ -232,6 +232,15 @@ echo "$no_all_visible_json" | strip_non_applicable | \
     grep -v "\"applicable\" :" | strip_non_invalid | \
     ensure json_pp > "$EXPECTED".invalid-applicable
 
+summarize < "$EXPECTED".applicable | ensure json_pp > "$EXPECTED".summary
+summarize < "$EXPECTED".applicable2 | ensure json_pp > "$EXPECTED".summary2
+summarize --expand-failed < "$EXPECTED".applicable | \
+    ensure json_pp > "$EXPECTED".summary-expand-failed
+summarize --expand-failed < "$EXPECTED".applicable2 | \
+    ensure json_pp > "$EXPECTED".summary-expand-failed2
+# Invalid tasks are searched for under failed tasks too
+summarize --expand-failed < "$EXPECTED".invalid | ensure json_pp > "$EXPECTED".summary-invalid
+
 
 preview_pjson=$(example "$DOC_PREVIEW" 1 | testdoc_2_pjson)
 echo "$preview_pjson" | remove_suites "invalid" "secret" | \
@@ -255,6 +264,10 @@ test_generated all --task--all "$query"
 test_generated invalid --task--invalid "$query"
 test_generated invalid-applicable --task--applicable --task--invalid "$query"
 
+test_2generated summary --task--summary "$query"
+test_2generated summary-expand-failed --task--summary --task--expand-failed "$query"
+test_generated summary-invalid --task--summary --task--invalid "$query"
+
 ROOTS=$PREVIEW_ROOTS
 test_generated preview-admin --task--preview "$cnum,1" --task--all "$query"
 test_generated preview-non-secret -l "$NON_SECRET_USER" --task--preview "$cnum,1" --task--all "$query"
@@ -247,6 +247,7 @@ replace_tokens() { # < text > text with replacing all tokens(changes, user)
 
 strip_non_applicable() { ensure "$MYDIR"/strip_non_applicable.py ; } # < json > json
 strip_non_invalid() { ensure "$MYDIR"/strip_non_invalid.py ; } # < json > json
+summarize() { ensure "$MYDIR"/summarize.py "$@" ; } # [--expand-failed] < json > json
 
 define_jsonByRoot() { # task_plugin_ouptut > jsonByRoot_array_definition
     local record root=''
@@ -0,0 +1,50 @@
+#!/usr/bin/env python3
+#
+# Copyright (C) 2024 The Android Open Source Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+import sys
+import json
+
+CHANGE='change'
+COUNTS='counts'
+NAME='name'
+STATUS='status'
+SUBTASKS='subTasks'
+
+EXPAND_FAILED='--expand-failed' in sys.argv[1:]
+
+# Unless expanded, the subtasks of failed tasks are not evaluated, so they are not counted
+def count(task, counts):
+    status=''
+    if STATUS in list(task.keys()):
+        status = task[STATUS]
+        counts[status] = counts.get(status, 0) + 1
+    if (EXPAND_FAILED or status != 'FAIL') and SUBTASKS in list(task.keys()):
+        for subtask in task[SUBTASKS]:
+            count(subtask, counts)
+
+def summarize(root):
+    summary={NAME: root[NAME]}
+    for key in [CHANGE, STATUS]:
+        if key in list(root.keys()):
+            summary[key] = root[key]
+    summary[COUNTS] = {}
+    count(root, summary[COUNTS])
+    return summary
+
+plugins=json.loads(sys.stdin.read())
+plugin=plugins['plugins'][0]
+plugin['roots']=[summarize(root) for root in plugin['roots']]
+print(json.dumps(plugins, indent=3, separators=(',', ' : '), sort_keys=True))